@@ -25,6 +25,9 @@ export default function ProfilePage() {
   const [isFollowing, setIsFollowing] = useState(false);
   const [isEditModalOpen, setIsEditModalOpen] = useState(false);
   const [loading, setLoading] = useState(true);
+  // Cursor de la siguiente página de la pestaña (cabecera X-Next-Cursor); null cuando no hay más
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [loadingMore, setLoadingMore] = useState(false);
 
   const isOwnProfile = currentUser?.username === decodeURIComponent(profileUsername || '');
 
@@ -47,30 +50,45 @@ export default function ProfilePage() {
     }
   }, [profileUsername, currentUser]);
 
+  const tabEndpoint = useCallback(() => {
+    switch (activeTab) {
+      case 'Replies': return `/posts/user/${profileUsername}/replies`;
+      case 'Reposts': return `/posts/user/${profileUsername}/reposts`;
+      // Media: los threads con imagen
+      default: return `/posts/user/${profileUsername}/threads`;
+    }
+  }, [profileUsername, activeTab]);
+
+  const tabPosts = useCallback((data: any[]) => (
+    activeTab === 'Media' ? data.filter((p: any) => p.imageUrl && p.imageUrl.trim() !== '') : data
+  ), [activeTab]);
+
   const fetchTabContent = useCallback(async () => {
     if (!profileUsername) return;
     try {
-      let endpoint = '';
-      switch (activeTab) {
-        case 'Threads': endpoint = `/posts/user/${profileUsername}/threads`; break;
-        case 'Replies': endpoint = `/posts/user/${profileUsername}/replies`; break;
-        case 'Reposts': endpoint = `/posts/user/${profileUsername}/reposts`; break;
-        case 'Media': endpoint = `/posts/user/${profileUsername}/threads`; break;
-        default: endpoint = `/posts/user/${profileUsername}/threads`;
-      }
-      
-      const response = await api.get(endpoint);
-      if (activeTab === 'Media') {
-          const mediaPosts = response.data.filter((p: any) => p.imageUrl && p.imageUrl.trim() !== '');
-          setPosts(mediaPosts);
-      } else {
-          setPosts(response.data);
-      }
+      const response = await api.get(tabEndpoint(), { params: { viewer: currentUser?.username } });
+      setPosts(tabPosts(response.data));
+      setNextCursor(response.headers['x-next-cursor'] ?? null);
     } catch (error) {
       console.error(`Error en tab ${activeTab}`, error);
       setPosts([]);
+      setNextCursor(null);
     }
-  }, [profileUsername, activeTab]);
+  }, [profileUsername, activeTab, currentUser, tabEndpoint, tabPosts]);
+
+  const loadMore = async () => {
+    if (!nextCursor || loadingMore) return;
+    try {
+      setLoadingMore(true);
+      const response = await api.get(tabEndpoint(), { params: { cursor: nextCursor, viewer: currentUser?.username } });
+      setPosts(prev => [...prev, ...tabPosts(response.data)]);
+      setNextCursor(response.headers['x-next-cursor'] ?? null);
+    } catch (error) {
+      console.error(`Error cargando más en tab ${activeTab}`, error);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
 
   useEffect(() => { fetchUserData(); }, [fetchUserData]);
   useEffect(() => { fetchTabContent(); }, [fetchTabContent]);
@@ -151,7 +169,7 @@ export default function ProfilePage() {
                 <div className="flex-shrink-0">
                     <div className="w-20 h-20 sm:w-24 sm:h-24 rounded-full overflow-hidden border border-border-color bg-gray-200">
                           <img 
-                              src={getAvatarUrl(viewedUser.avatarUrl)} 
+                              src={getAvatarUrl(viewedUser.avatarUrl, null)} 
                               alt={profileUsername} 
                               className="w-full h-full object-cover"
                               onError={(e) => {
@@ -218,12 +236,21 @@ export default function ProfilePage() {
 
         {/* LISTA DE POSTS */}
         <div className="min-h-[200px]">
-            {posts.length > 0 ? (
+            {posts.length > 0 || nextCursor ? (
                 posts.map((post) => (
                     <div key={post.id} className="border-b border-border-color/10 last:border-0">
                          <PostCard {...post} />
                     </div>
-                ))
+                )).concat(nextCursor ? [
+                    <button
+                       key="load-more"
+                       onClick={loadMore}
+                       disabled={loadingMore}
+                       className="w-full py-4 text-sm font-semibold text-gray-500 hover:text-foreground"
+                    >
+                       {loadingMore ? 'Cargando...' : 'Cargar más'}
+                    </button>
+                ] : [])
             ) : (
                 <div className="py-16 text-center text-gray-500 text-[15px]">
                     {activeTab === 'Media' 
@@ -1,16 +1,18 @@
 "use client";
 
-import { useState, useEffect } from 'react';
+import { useState, useEffect, useCallback } from 'react';
 import { Heart, UserPlus, MessageCircle, Repeat2 } from 'lucide-react';
 import { useAuth } from '@/context/AuthContext';
 import api from '@/lib/api';
 import { useRouter } from 'next/navigation';
 
 // Utilidad para imagen
-const getFullAvatarUrl = (url: string | undefined) => {
+// size: versión reducida del servidor ('sm' para avatares, 'feed' para fotos de posts)
+const getFullAvatarUrl = (url: string | undefined, size?: string) => {
   if (!url) return undefined;
   if (url.startsWith('http')) return url;
-  return `https://socialnetworkserver-3kyu.onrender.com${url}`;
+  const full = `https://socialnetworkserver-3kyu.onrender.com${url}`;
+  return size ? `${full}?size=${size}` : full;
 };
 
 export default function ActivityPage() {
@@ -19,6 +21,9 @@ export default function ActivityPage() {
   const [activities, setActivities] = useState<any[]>([]);
   const [filter, setFilter] = useState('ALL');
   const [loading, setLoading] = useState(true);
+  // Cursor de la siguiente página (cabecera X-Next-Cursor); null cuando no hay más
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [loadingMore, setLoadingMore] = useState(false);
 
   // Mapeo de Filtros
   const filters = [
@@ -29,28 +34,60 @@ export default function ActivityPage() {
     { id: 'REPOST', label: 'Republicaciones' },
   ];
 
+  // El filtro se aplica en el servidor: cada pestaña pagina solo sus grupos
+  const typeParam = filter === 'ALL' ? undefined : filter;
+
+  const fetchActivities = useCallback(async () => {
+    if (!user) return;
+    try {
+      setLoading(true);
+      const response = await api.get(`/activities/${user.username}`, { params: { type: typeParam } });
+      setActivities(response.data);
+      setNextCursor(response.headers['x-next-cursor'] ?? null);
+    } catch (error) {
+      console.error("Error actividad:", error);
+      setActivities([]);
+      setNextCursor(null);
+    } finally {
+      setLoading(false);
+    }
+  }, [user, typeParam]);
+
   useEffect(() => {
-    const fetchAndRead = async () => {
-      if (!user) return;
-      try {
-        setLoading(true);
-        const response = await api.get(`/activities/${user.username}`);
-        setActivities(response.data);
-        await api.patch(`/activities/read?username=${user.username}&type=GENERAL`);
-      } catch (error) {
-        console.error("Error actividad:", error);
-      } finally {
-        setLoading(false);
-      }
-    };
-
-    fetchAndRead();
+    fetchActivities();
+  }, [fetchActivities]);
+
+  // Al entrar se marcan como leídas (una vez, no por pestaña)
+  useEffect(() => {
+    if (!user) return;
+    api.patch(`/activities/read?username=${user.username}&type=GENERAL`)
+      .catch(error => console.error("Error marcando actividad:", error));
   }, [user]);
 
-  // Filtrado
-  const filteredActivities = filter === 'ALL' 
-    ? activities 
-    : activities.filter(a => a.type === filter);
+  const loadMore = async () => {
+    if (!user || !nextCursor || loadingMore) return;
+    try {
+      setLoadingMore(true);
+      const response = await api.get(`/activities/${user.username}`, { params: { type: typeParam, cursor: nextCursor } });
+      setActivities(prev => [...prev, ...response.data]);
+      setNextCursor(response.headers['x-next-cursor'] ?? null);
+    } catch (error) {
+      console.error("Error cargando más actividad:", error);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
+  // "ana", "ana y bob", "ana y 41 más"
+  const renderActors = (act: any) => {
+    const first = act.actors[0]?.username ?? '';
+    const others = act.count - 1;
+    if (others <= 0) return <span className="font-bold mr-1">{first}</span>;
+    if (others === 1 && act.actors[1]) {
+      return <><span className="font-bold">{first}</span> y <span className="font-bold mr-1">{act.actors[1].username}</span></>;
+    }
+    return <><span className="font-bold">{first}</span> y <span className="mr-1">{others} más</span></>;
+  };
 
   // Renderizado del Badge
   const renderBadge = (type: string) => {
@@ -105,26 +142,26 @@ export default function ActivityPage() {
         <div className="flex flex-col pb-4">
            {loading ? (
                <div className="p-8 text-center text-gray-500">Cargando actividad...</div>
-           ) : filteredActivities.length === 0 ? (
+           ) : activities.length === 0 ? (
                <div className="p-12 text-center text-gray-500">No hay actividad reciente.</div>
            ) : (
-               filteredActivities.map((act) => (
+               activities.filter(act => act.actors.length > 0).map((act) => (
                  <div 
                    key={act.id} 
                    className={`flex gap-4 p-4 border-b border-border-color/10 hover:bg-black/5 dark:hover:bg-white/5 transition-colors cursor-pointer ${!act.read ? 'bg-blue-500/5' : ''}`}
                    onClick={() => {
                       if (act.post) router.push(`/post/${act.post.id}`);
-                      else router.push(`/${act.actor.username}`);
+                      else router.push(`/${act.actors[0].username}`);
                    }}
                  >
                    {/* AVATAR + BADGE */}
                    <div className="relative flex-shrink-0">
                        <div className="w-10 h-10 rounded-full bg-gray-200 overflow-hidden border border-border-color/30">
-                           {act.actor.avatarUrl ? (
-                              <img src={getFullAvatarUrl(act.actor.avatarUrl)} className="w-full h-full object-cover" alt="avatar"/>
+                           {act.actors[0].avatarUrl ? (
+                              <img src={getFullAvatarUrl(act.actors[0].avatarUrl, 'sm')} className="w-full h-full object-cover" alt="avatar"/>
                            ) : (
                               <div className="w-full h-full flex items-center justify-center font-bold text-gray-500 bg-gray-100">
-                                  {act.actor.username[0].toUpperCase()}
+                                  {act.actors[0].username[0].toUpperCase()}
                               </div>
                            )}
                        </div>
@@ -136,12 +173,12 @@ export default function ActivityPage() {
                    {/* CONTENIDO TEXTO */}
                    <div className="flex-1 flex flex-col justify-center">
                        <div className="text-[15px] leading-snug">
-                           <span className="font-bold mr-1">{act.actor.username}</span>
+                           {renderActors(act)}
                            <span className="text-gray-500">
-                               {act.type === 'FOLLOW' && 'empezó a seguirte'}
-                               {act.type === 'LIKE' && 'indicó que le gusta tu post'}
-                               {act.type === 'REPOST' && 'reposteó tu hilo'}
-                               {act.type === 'REPLY' && 'respondió a tu hilo'}
+                               {act.type === 'FOLLOW' && (act.count > 1 ? 'empezaron a seguirte' : 'empezó a seguirte')}
+                               {act.type === 'LIKE' && (act.count > 1 ? 'indicaron que les gusta tu post' : 'indicó que le gusta tu post')}
+                               {act.type === 'REPOST' && (act.count > 1 ? 'repostearon tu hilo' : 'reposteó tu hilo')}
+                               {act.type === 'REPLY' && (act.count > 1 ? 'respondieron a tu hilo' : 'respondió a tu hilo')}
                            </span>
                            <span className="text-gray-400 text-sm ml-2">
                                {/* Fecha relativa si la tienes */}
@@ -167,12 +204,21 @@ export default function ActivityPage() {
                    {/* MINIATURA DE IMAGEN */}
                    {act.post?.imageUrl && act.type !== 'FOLLOW' && (
                        <div className="w-10 h-10 rounded-lg overflow-hidden border border-border-color/20 flex-shrink-0">
-                           <img src={getFullAvatarUrl(act.post.imageUrl)} className="w-full h-full object-cover" alt="post"/>
+                           <img src={getFullAvatarUrl(act.post.imageUrl, 'feed')} className="w-full h-full object-cover" alt="post"/>
                        </div>
                    )}
 
                  </div>
-               ))
+               )).concat(nextCursor ? [
+                 <button
+                    key="load-more"
+                    onClick={loadMore}
+                    disabled={loadingMore}
+                    className="py-4 text-sm font-semibold text-gray-500 hover:text-foreground"
+                 >
+                    {loadingMore ? 'Cargando...' : 'Cargar más'}
+                 </button>
+               ] : [])
            )}
         </div>
 
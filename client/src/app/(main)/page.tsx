@@ -16,8 +16,8 @@ interface Post {
   repostsCount: number;
   imageUrl?: string;
   repostFromUserName?: string;
-  likedByUsers?: { username: string }[];
-  repostedByUsers?: { username: string }[];
+  likedByMe?: boolean;
+  repostedByMe?: boolean;
   user?: {
     displayName?: string;
     username: string;
@@ -30,6 +30,9 @@ export default function HomePage() {
   const [posts, setPosts] = useState<Post[]>([]);
   const [activeTab, setActiveTab] = useState<'FOR_YOU' | 'FOLLOWING'>('FOR_YOU');
   const [loading, setLoading] = useState(true);
+  // Cursor de la siguiente página (cabecera X-Next-Cursor); null cuando no hay más
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [loadingMore, setLoadingMore] = useState(false);
 
   const fetchPosts = useCallback(async () => {
     if (!user && activeTab === 'FOLLOWING') {
@@ -44,19 +47,36 @@ export default function HomePage() {
       if (activeTab === 'FOLLOWING') {
         response = await api.get(`/posts/following/${user?.username}`);
       } else {
-        response = await api.get('/posts');
+        response = await api.get('/posts', { params: { viewer: user?.username } });
       }
       
       setPosts(response.data);
+      setNextCursor(response.headers['x-next-cursor'] ?? null);
 
     } catch (error) {
       console.error("Error cargando el feed:", error);
       setPosts([]); 
+      setNextCursor(null);
     } finally {
       setLoading(false);
     }
   }, [activeTab, user]);
 
+  const loadMore = async () => {
+    if (!nextCursor || loadingMore) return;
+    try {
+      setLoadingMore(true);
+      const endpoint = activeTab === 'FOLLOWING' ? `/posts/following/${user?.username}` : '/posts';
+      const response = await api.get(endpoint, { params: { cursor: nextCursor, viewer: user?.username } });
+      setPosts(prev => [...prev, ...response.data]);
+      setNextCursor(response.headers['x-next-cursor'] ?? null);
+    } catch (error) {
+      console.error("Error cargando más posts:", error);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   useEffect(() => {
     fetchPosts();
     const handleGlobalUpdate = () => fetchPosts();
@@ -133,7 +153,16 @@ export default function HomePage() {
                             isLast={index === posts.length - 1} 
                          />
                      </div>
-                 ))
+                 )).concat(nextCursor ? [
+                     <button
+                        key="load-more"
+                        onClick={loadMore}
+                        disabled={loadingMore}
+                        className="py-4 text-sm font-semibold text-gray-500 hover:text-foreground"
+                     >
+                        {loadingMore ? 'Cargando...' : 'Cargar más'}
+                     </button>
+                 ] : [])
             ) : (
                  <div className="py-20 text-center text-gray-500 px-6">
                      {activeTab === 'FOLLOWING' ? (
@@ -4,15 +4,70 @@ import { useEffect, useState } from 'react';
 import { useParams, useRouter } from 'next/navigation';
 import { ArrowLeft, Loader2 } from 'lucide-react';
 import api from '@/lib/api';
+import { useAuth } from '@/context/AuthContext';
 import { PostCard } from '@/features/posts/components/PostCard';
 import { CreatePostModal } from '@/features/posts/components/CreatePostModal';
 
+// Nodo de /posts/{id}/thread: el post, sus respuestas y cuántas faltan por cargar
+type ThreadNode = {
+  post: any;
+  replies: ThreadNode[];
+  moreReplies: number;
+  nextCursor: string | null;
+};
+
+// Respuestas de un nodo, sangradas por nivel; "Ver más" pide la siguiente página de esa rama
+// (con nextCursor) o, si no se cargó ninguna, el hilo de ese post
+function ThreadReplies({ node, viewer, depth = 0 }: { node: ThreadNode; viewer?: string; depth?: number }) {
+  const [replies, setReplies] = useState<ThreadNode[]>(node.replies);
+  const [more, setMore] = useState(node.moreReplies);
+  const [cursor, setCursor] = useState(node.nextCursor);
+  const [loadingMore, setLoadingMore] = useState(false);
+
+  const loadMore = async () => {
+    try {
+      setLoadingMore(true);
+      const res = await api.get(`/posts/${node.post.id}/thread`, {
+        params: { viewer, cursor: cursor ?? undefined },
+      });
+      setReplies((prev) => (cursor ? [...prev, ...res.data.replies] : res.data.replies));
+      setMore(res.data.moreReplies);
+      setCursor(res.data.nextCursor);
+    } catch (error) {
+      console.error("Error cargando respuestas:", error);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
+  return (
+    <div className={depth > 0 ? 'ml-6 border-l border-border-color/50' : ''}>
+      {replies.map((reply) => (
+        <div key={reply.post.id}>
+          <PostCard {...reply.post} />
+          <ThreadReplies node={reply} viewer={viewer} depth={depth + 1} />
+        </div>
+      ))}
+      {more > 0 && (
+        <button
+          onClick={loadMore}
+          disabled={loadingMore}
+          className="px-4 py-2 text-sm text-sky-500 hover:underline disabled:opacity-50"
+        >
+          {loadingMore ? 'Cargando...' : `Ver ${more} ${more === 1 ? 'respuesta' : 'respuestas'} más`}
+        </button>
+      )}
+    </div>
+  );
+}
+
 export default function PostPage() {
   const { id } = useParams(); // Obtenemos el ID del post de la URL
   const router = useRouter();
+  const { user } = useAuth();
   
   const [post, setPost] = useState<any>(null);
-  const [replies, setReplies] = useState<any[]>([]);
+  const [thread, setThread] = useState<ThreadNode | null>(null);
   const [loading, setLoading] = useState(true);
   
   // Para responder
@@ -24,19 +79,11 @@ export default function PostPage() {
       if (!id) return;
       try {
         setLoading(true);
-        // 1. Cargar el post principal
-        const postRes = await api.get(`/posts/${id}`);
-        setPost(postRes.data);
-
-        // 2. Cargar las respuestas (asumiendo que tienes este endpoint o usas threads)
-        // Si tu backend no tiene endpoint de replies directo, intenta cargar el hilo
-        try {
-            const repliesRes = await api.get(`/posts/${id}/replies`); 
-            setReplies(repliesRes.data);
-        } catch (err) {
-            console.log("No hay respuestas o error cargándolas");
-            setReplies([]);
-        }
+        // El post y su árbol de respuestas en una sola petición
+        const viewer = user?.username;
+        const threadRes = await api.get(`/posts/${id}/thread`, { params: { viewer } });
+        setPost(threadRes.data.post);
+        setThread(threadRes.data);
 
       } catch (error) {
         console.error("Error cargando post:", error);
@@ -46,7 +93,7 @@ export default function PostPage() {
     };
 
     fetchPostData();
-  }, [id]);
+  }, [id, user]);
 
   if (loading) {
     return (
@@ -78,15 +125,13 @@ export default function PostPage() {
 
       {/* SECCIÓN DE RESPUESTAS */}
       <div className="pb-40">
-         {replies.length > 0 && (
+         {thread && thread.replies.length > 0 && (
              <div className="px-4 py-3 text-sm text-gray-500 font-medium">Respuestas</div>
          )}
-         
-         {replies.map((reply) => (
-             <PostCard key={reply.id} {...reply} />
-         ))}
 
-         {replies.length === 0 && (
+         {thread && <ThreadReplies node={thread} viewer={user?.username} />}
+
+         {thread && thread.replies.length === 0 && (
             <div className="py-10 text-center text-gray-400 text-sm">
                 Nadie ha respondido aún. <br/>
                 <button 
@@ -5,8 +5,12 @@ import { ImageIcon, Send, ArrowLeft, MoreHorizontal } from 'lucide-react';
 import { useRouter, useParams } from 'next/navigation'; // 👈 Hooks de Next.js
 import { useAuth } from '@/context/AuthContext';
 import api from '@/lib/api';
+import { openStream } from '@/lib/stream';
 
 // Utilidad para URLs
+// Mensajes por página del chat
+const CHAT_PAGE_SIZE = 50;
+
 const getFullImageUrl = (path: string) => {
   if (!path) return '';
   return path.startsWith('http') ? path : `https://socialnetworkserver-3kyu.onrender.com${path}`;
@@ -27,6 +31,8 @@ export default function MessagesPage() {
   const [unreadCounts, setUnreadCounts] = useState<Record<string, number>>({});
   const [newMessage, setNewMessage] = useState('');
   const [loading, setLoading] = useState(true);
+  // Conectado al canal en tiempo real: mientras lo esté no hace falta hacer polling
+  const [live, setLive] = useState(false);
 
   // --- 1. CARGA DE CONTACTOS ---
   const fetchContactsData = useCallback(async () => {
@@ -45,11 +51,27 @@ export default function MessagesPage() {
   }, [currentUser]);
 
   // --- 2. CARGA DE CHAT ---
+  // La primera carga trae los últimos mensajes; después solo se piden los posteriores al último que tenemos
+  const messagesRef = useRef<any[]>([]);
+  messagesRef.current = messages;
+  const [hasOlder, setHasOlder] = useState(false);
+
   const fetchChat = useCallback(async () => {
     if (!urlUsername || !currentUser) return;
     try {
-      const res = await api.get(`/messages/conversation?user1=${currentUser.username}&user2=${urlUsername}`);
-      setMessages(res.data);
+      const base = `/messages/conversation?user1=${currentUser.username}&user2=${urlUsername}`;
+      const current = messagesRef.current;
+      const lastId = current.length > 0 ? current[current.length - 1].id : null;
+
+      if (lastId === null) {
+        const res = await api.get(`${base}&limit=${CHAT_PAGE_SIZE}`);
+        setMessages(res.data);
+        setHasOlder(res.data.length === CHAT_PAGE_SIZE);
+      } else {
+        const res = await api.get(`${base}&after=${lastId}&limit=${CHAT_PAGE_SIZE}`);
+        if (res.data.length === 0) return;
+        setMessages(prev => [...prev, ...res.data.filter((m: any) => !prev.some(p => p.id === m.id))]);
+      }
       // Marcar como leído
       await api.patch(`/messages/read?username=${currentUser.username}&from=${urlUsername}`);
     } catch (e) { 
@@ -57,27 +79,73 @@ export default function MessagesPage() {
     }
   }, [urlUsername, currentUser]);
 
-  // --- EFECTOS (Polling) ---
+  // Scroll hacia atrás: mensajes anteriores al primero cargado
+  const fetchOlder = async () => {
+    if (!urlUsername || !currentUser || messages.length === 0) return;
+    try {
+      const res = await api.get(`/messages/conversation?user1=${currentUser.username}&user2=${urlUsername}&before=${messages[0].id}&limit=${CHAT_PAGE_SIZE}`);
+      setMessages(prev => [...res.data, ...prev]);
+      setHasOlder(res.data.length === CHAT_PAGE_SIZE);
+    } catch (e) {
+      console.error("Error cargando mensajes anteriores:", e);
+    }
+  };
+
+  // Al cambiar de chat se empieza de cero
+  useEffect(() => {
+    setMessages([]);
+    messagesRef.current = [];
+    setHasOlder(false);
+  }, [urlUsername]);
+
+  // --- TIEMPO REAL ---
+  // Los handlers se leen de una ref para no reabrir la conexión al cambiar de chat
+  const streamHandlers = useRef({ fetchChat, fetchContactsData, urlUsername });
+  streamHandlers.current = { fetchChat, fetchContactsData, urlUsername };
+
+  useEffect(() => {
+    if (!currentUser) return;
+    return openStream(currentUser.username, {
+      onStatus: setLive,
+      message: (msg) => {
+        const { fetchChat, fetchContactsData, urlUsername } = streamHandlers.current;
+        if (urlUsername && (msg.sender === urlUsername || msg.recipient === urlUsername)) fetchChat();
+        else fetchContactsData();
+      },
+      activity: (event) => {
+        if (event.unreadMessages) setUnreadCounts(event.unreadMessages);
+      },
+      resync: () => {
+        streamHandlers.current.fetchContactsData();
+        streamHandlers.current.fetchChat();
+      },
+    });
+  }, [currentUser]);
+
+  // --- EFECTOS (Polling, solo sin conexión en tiempo real) ---
   useEffect(() => {
     fetchContactsData();
+    if (live) return;
     const interval = setInterval(fetchContactsData, 5000); 
     return () => clearInterval(interval);
-  }, [fetchContactsData]);
+  }, [fetchContactsData, live]);
 
   useEffect(() => {
     if (urlUsername && currentUser) {
       fetchChat();
+      if (live) return;
       const interval = setInterval(fetchChat, 3000); // Polling rápido para chat activo
       return () => clearInterval(interval);
     }
-  }, [fetchChat, urlUsername, currentUser]);
+  }, [fetchChat, urlUsername, currentUser, live]);
 
-  // Auto-scroll al fondo
+  // Auto-scroll al fondo (solo cuando llega un mensaje nuevo, no al cargar anteriores)
+  const lastMessageId = messages.length > 0 ? messages[messages.length - 1].id : null;
   useEffect(() => {
     if (scrollRef.current) {
       scrollRef.current.scrollTop = scrollRef.current.scrollHeight;
     }
-  }, [messages]);
+  }, [lastMessageId]);
 
   // --- ENVIAR MENSAJE ---
   const handleSendMessage = async (e: FormEvent) => {
@@ -157,7 +225,11 @@ export default function MessagesPage() {
                         {contact.displayName || contact.username}
                     </div>
                     <div className={`text-sm truncate ${unreadCounts[contact.username] > 0 ? 'font-bold text-foreground' : 'text-gray-500'}`}>
-                        {unreadCounts[contact.username] > 0 ? 'Nuevos mensajes' : 'Ver conversación'}
+                        {unreadCounts[contact.username] > 0
+                          ? 'Nuevos mensajes'
+                          : contact.lastMessagePreview
+                            ? `${contact.lastFromMe ? 'Tú: ' : ''}${contact.lastMessagePreview}`
+                            : 'Ver conversación'}
                     </div>
                   </div>
                 </div>
@@ -200,6 +272,13 @@ export default function MessagesPage() {
               ref={scrollRef}
               className="flex-1 overflow-y-auto p-4 space-y-3"
             >
+              {hasOlder && (
+                <div className="flex justify-center">
+                  <button onClick={fetchOlder} className="text-xs text-gray-500 hover:text-foreground px-3 py-1 rounded-full border border-border-color">
+                    Cargar mensajes anteriores
+                  </button>
+                </div>
+              )}
               {messages.map((m) => {
                  const isMine = m.sender.username === currentUser.username;
                  return (
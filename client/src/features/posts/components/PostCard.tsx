@@ -32,6 +32,9 @@ export interface PostCardProps {
   repostFromUserName?: string;
   likedByUsers?: { username: string }[]; 
   repostedByUsers?: { username: string }[]; 
+  // Los feeds devuelven directamente si el usuario actual ya dio like / reposteó
+  likedByMe?: boolean;
+  repostedByMe?: boolean;
   user?: {
     displayName?: string;
     username: string;
@@ -42,7 +45,7 @@ export interface PostCardProps {
 
 export const PostCard: React.FC<PostCardProps> = ({ 
   id, content, imageUrl, createdAt, likesCount: initialLikes, 
-  repliesCount, repostsCount: initialReposts, repostFromUserName, likedByUsers, repostedByUsers, user, isLast 
+  repliesCount, repostsCount: initialReposts, repostFromUserName, likedByUsers, repostedByUsers, likedByMe, repostedByMe, user, isLast 
 }) => {
   const { user: currentUser } = useAuth();
   const router = useRouter();
@@ -73,19 +76,21 @@ export const PostCard: React.FC<PostCardProps> = ({
   // Efecto para verificar estado inicial (Like y Repost)
   useEffect(() => {
     if (currentUser) {
-        if (likedByUsers) {
+        if (likedByMe !== undefined) {
+            setIsLiked(likedByMe);
+        } else if (likedByUsers) {
             setIsLiked(likedByUsers.some(u => u.username === currentUser.username));
         }
         
         // Detección mejorada de Repost
-        const isInRepostList = repostedByUsers?.some(u => u.username === currentUser.username);
+        const isInRepostList = repostedByMe ?? repostedByUsers?.some(u => u.username === currentUser.username);
         const isMyOwnRepostCard = user?.username === currentUser.username && !!repostFromUserName;
 
         if (isInRepostList || isMyOwnRepostCard) {
             setIsReposted(true);
         }
     }
-  }, [likedByUsers, repostedByUsers, currentUser, user, repostFromUserName]);
+  }, [likedByUsers, repostedByUsers, likedByMe, repostedByMe, currentUser, user, repostFromUserName]);
 
   // Manejador de Like
   const handleLike = async (e: React.MouseEvent) => {
@@ -237,7 +242,7 @@ export const PostCard: React.FC<PostCardProps> = ({
 
           {imageUrl && (
               <div className="mt-3 rounded-2xl overflow-hidden border border-gray-200 dark:border-gray-800">
-                  <img src={getFullUrl(imageUrl)} alt="Post" className="w-full h-auto" loading="lazy" />
+                  <img src={imageUrl.startsWith('http') ? imageUrl : `${getFullUrl(imageUrl)}?size=feed`} alt="Post" className="w-full h-auto" loading="lazy" />
               </div>
           )}
 
@@ -4,7 +4,7 @@ import React, { useState, useRef } from 'react';
 import { Image as ImageIcon, X, Loader2 } from 'lucide-react';
 import { useAuth } from '@/context/AuthContext';
 import api from '@/lib/api';
-import { getAvatarUrl } from '@/lib/utils';
+import { getAvatarUrl, isSupportedImage, SUPPORTED_IMAGE_TYPES, UNSUPPORTED_IMAGE_MESSAGE } from '@/lib/utils';
 
 // 1. CAMBIO AQUÍ: Agregamos className opcional a la interfaz
 interface PostEditorProps {
@@ -25,6 +25,11 @@ export const PostEditor = ({ onPostCreated, className = '' }: PostEditorProps) =
   const handleFileSelect = (e: React.ChangeEvent<HTMLInputElement>) => {
     if (e.target.files && e.target.files[0]) {
       const file = e.target.files[0];
+      if (!isSupportedImage(file)) {
+        alert(UNSUPPORTED_IMAGE_MESSAGE);
+        e.target.value = '';
+        return;
+      }
       setSelectedFile(file);
       setPreview(URL.createObjectURL(file));
     }
@@ -121,7 +126,7 @@ export const PostEditor = ({ onPostCreated, className = '' }: PostEditorProps) =
               type="file" 
               ref={fileInputRef} 
               className="hidden" 
-              accept="image/*" 
+              accept={SUPPORTED_IMAGE_TYPES.join(',')}
               onChange={handleFileSelect}
             />
           </div>
@@ -3,6 +3,7 @@
 import React, { useState, useRef } from 'react';
 import { X, Camera } from 'lucide-react';
 import api from '@/lib/api'; // Ajusta la ruta de tu api
+import { isSupportedImage, SUPPORTED_IMAGE_TYPES, UNSUPPORTED_IMAGE_MESSAGE } from '@/lib/utils';
 
 interface EditProfileModalProps {
   user: any;
@@ -27,6 +28,11 @@ export const EditProfileModal = ({ user, onClose, onUpdate }: EditProfileModalPr
   const handleFileChange = (e: React.ChangeEvent<HTMLInputElement>) => {
     if (e.target.files && e.target.files[0]) {
       const file = e.target.files[0];
+      if (!isSupportedImage(file)) {
+        alert(UNSUPPORTED_IMAGE_MESSAGE);
+        e.target.value = '';
+        return;
+      }
       setSelectedFile(file);
       setPreview(URL.createObjectURL(file));
     }
@@ -93,7 +99,7 @@ export const EditProfileModal = ({ user, onClose, onUpdate }: EditProfileModalPr
                   <div className="absolute inset-0 flex items-center justify-center opacity-0 group-hover:opacity-100 transition-opacity">
                       <Camera className="text-white drop-shadow-md" size={24} />
                   </div>
-                  <input ref={fileInputRef} type="file" accept="image/*" className="hidden" onChange={handleFileChange} />
+                  <input ref={fileInputRef} type="file" accept={SUPPORTED_IMAGE_TYPES.join(',')} className="hidden" onChange={handleFileChange} />
               </div>
 
               {/* Campos de Texto */}
@@ -0,0 +1,25 @@
+import api from './api';
+
+// Canal en tiempo real del servidor (Server-Sent Events en /stream/{username}).
+// Eventos: "message" (mensaje nuevo), "activity" (notificación + contadores) y "resync" (recargar por REST).
+// EventSource se reconecta solo; onStatus avisa para volver al polling mientras no hay conexión.
+export type StreamHandlers = {
+  message?: (data: any) => void;
+  activity?: (data: any) => void;
+  resync?: () => void;
+  onStatus?: (connected: boolean) => void;
+};
+
+export function openStream(username: string, handlers: StreamHandlers): () => void {
+  if (typeof window === 'undefined' || typeof EventSource === 'undefined') return () => {};
+
+  const source = new EventSource(`${api.defaults.baseURL}/stream/${username}`, { withCredentials: true });
+
+  source.onopen = () => handlers.onStatus?.(true);
+  source.onerror = () => handlers.onStatus?.(false);
+  source.addEventListener('message', (e) => handlers.message?.(JSON.parse((e as MessageEvent).data)));
+  source.addEventListener('activity', (e) => handlers.activity?.(JSON.parse((e as MessageEvent).data)));
+  source.addEventListener('resync', () => handlers.resync?.());
+
+  return () => source.close();
+}
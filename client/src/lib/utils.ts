@@ -1,6 +1,7 @@
 // src/lib/utils.ts
 
-export const getAvatarUrl = (url: string | undefined | null) => {
+// size: versión reducida que sirve el servidor ('sm' 64px, 'md' 128px); null = original (400px)
+export const getAvatarUrl = (url: string | undefined | null, size: string | null = 'md') => {
   // 1. Si no hay URL, retornamos la imagen gris por defecto
   if (!url || url.trim() === '') {
     return '/assets/default_profile_400x400.png';
@@ -12,5 +13,13 @@ export const getAvatarUrl = (url: string | undefined | null) => {
   }
 
   // 3. CAMBIO: Apuntamos a LOCALHOST para ver las fotos de tu PC
-  return `http://localhost:8080${url}`;
-};
\ No newline at end of file
+  const full = `http://localhost:8080${url}`;
+  return size ? `${full}?size=${size}` : full;
+};
+
+// Formatos que el servidor sabe procesar. WebP y HEIC (fotos de iPhone) no: se avisa antes de subirlos
+export const SUPPORTED_IMAGE_TYPES = ['image/jpeg', 'image/png', 'image/gif', 'image/bmp'];
+
+export const UNSUPPORTED_IMAGE_MESSAGE = 'Formato de imagen no soportado. Usa JPEG, PNG, GIF o BMP.';
+
+export const isSupportedImage = (file: File) => SUPPORTED_IMAGE_TYPES.includes(file.type);
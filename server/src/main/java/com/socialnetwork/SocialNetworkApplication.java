@@ -2,10 +2,13 @@ package com.socialnetwork;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 // 👇 ESTA LÍNEA ES LA SOLUCIÓN DEFINITIVA 👇
 // Obliga a Spring a buscar tu SecurityConfig en todo el paquete "com.socialnetwork"
 @SpringBootApplication(scanBasePackages = "com.socialnetwork") 
+// Tareas periódicas (volcado de contadores, etc.)
+@EnableScheduling
 public class SocialNetworkApplication {
 
     public static void main(String[] args) {
@@ -54,6 +54,10 @@ public class SecurityConfig {
                 // 4. MENSAJES Y NOTIFICACIONES
                 .requestMatchers("/messages/**", "/api/messages/**").permitAll()
                 .requestMatchers("/activities/**", "/api/activities/**").permitAll()
+                .requestMatchers("/stream/**", "/api/stream/**").permitAll()
+
+                // 5. MÉTRICAS (cachés, colas)
+                .requestMatchers("/metrics/**", "/api/metrics/**").permitAll()
                 
                 // Imágenes (Importante para ver las fotos subidas)
                 .requestMatchers("/images/**", "/api/posts/images/**").permitAll()
@@ -91,6 +95,8 @@ public class SecurityConfig {
         ));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
         configuration.setAllowedHeaders(List.of("*"));
+        // Cursor de paginación de los feeds (el navegador solo lo ve si se expone)
+        configuration.setExposedHeaders(List.of("X-Next-Cursor"));
         configuration.setAllowCredentials(true);
         
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -1,7 +1,12 @@
 package com.socialnetwork.controller;
 
-import com.socialnetwork.entity.Activity;
-import com.socialnetwork.repository.ActivityRepository;
+import com.socialnetwork.dto.FeedCursor;
+import com.socialnetwork.dto.NotificationGroupDTO;
+import com.socialnetwork.entity.User;
+import com.socialnetwork.repository.UserRepository;
+import com.socialnetwork.service.ActivityService;
+import com.socialnetwork.service.ConversationService;
+import com.socialnetwork.service.NotificationGroupService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
@@ -9,6 +14,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 // 👇 AQUÍ ESTÁ EL ARREGLO: Escuchamos en las dos direcciones
@@ -16,18 +22,52 @@ import java.util.Map;
 @CrossOrigin(
     origins = {"https://socialnetworkclient-oyjw.onrender.com", "http://localhost:3000"},
     methods = {RequestMethod.GET, RequestMethod.PATCH, RequestMethod.OPTIONS},
-    allowedHeaders = "*"
+    allowedHeaders = "*",
+    exposedHeaders = FeedCursor.HEADER
 )
 public class ActivityController {
 
+    // Tamaño de página por defecto y máximo de la página de actividad
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 50;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
     @Autowired
-    private ActivityRepository activityRepository;
+    private NotificationGroupService notificationGroupService;
 
-    // 1. OBTENER TODAS LAS NOTIFICACIONES DE UN USUARIO
+    // 1. OBTENER LAS NOTIFICACIONES DE UN USUARIO, agrupadas por (tipo, post): "ana y 41 más indicaron que les gusta tu post".
+    // Más recientes primero, paginadas por cursor (cabecera X-Next-Cursor); "type" filtra por tipo (LIKE, FOLLOW...)
     @GetMapping("/{username}")
-    public ResponseEntity<List<Activity>> getActivities(@PathVariable("username") String username) {
-        // Devuelve las notificaciones ordenadas por fecha (más recientes primero)
-        return ResponseEntity.ok(activityRepository.findByRecipientUsernameOrderByCreatedAtDesc(username));
+    public ResponseEntity<List<NotificationGroupDTO>> getActivities(
+            @PathVariable("username") String username,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "type", required = false) String type) {
+
+        Optional<User> userOpt = userRepository.findByUsername(username);
+        if (userOpt.isEmpty()) return ResponseEntity.notFound().build();
+
+        FeedCursor after = FeedCursor.decode(cursor);
+        if (cursor != null && !cursor.isBlank() && after == null) return ResponseEntity.badRequest().build();
+
+        int size = (limit == null || limit < 1) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        String typeFilter = (type == null || type.isBlank() || "ALL".equals(type)) ? null : type;
+        List<NotificationGroupDTO> groups = notificationGroupService.page(userOpt.get().getId(), typeFilter, after, size);
+
+        // Si la página vino llena, el último grupo es el cursor de la siguiente
+        if (groups.size() < size) return ResponseEntity.ok(groups);
+        NotificationGroupDTO last = groups.get(groups.size() - 1);
+        return ResponseEntity.ok()
+                .header(FeedCursor.HEADER, new FeedCursor(last.getUpdatedAt(), last.getId()).encode())
+                .body(groups);
     }
 
     // 2. MARCAR NOTIFICACIONES COMO LEÍDAS (Por tipo)
@@ -37,18 +77,18 @@ public class ActivityController {
             @RequestParam("username") String username, 
             @RequestParam("type") String type) {
         
-        List<Activity> unread;
-        
         // Separamos la lógica: notificaciones de chat vs notificaciones generales (Likes, Follows, Reposts)
-        if ("MESSAGE".equals(type)) {
-            unread = activityRepository.findByRecipientUsernameAndTypeAndIsReadFalse(username, "MESSAGE");
-        } else {
-            unread = activityRepository.findByRecipientUsernameAndTypeNotAndIsReadFalse(username, "MESSAGE");
+        long updated = activityService.markRead(username, type);
+        if (ActivityService.MESSAGE.equals(type)) {
+            userRepository.findByUsername(username).ifPresent(u -> conversationService.markAllRead(u.getId()));
         }
-
-        unread.forEach(a -> a.setRead(true));
-        activityRepository.saveAll(unread);
         
-        return ResponseEntity.ok(Map.of("message", "Notificaciones marcadas como leídas"));
+        return ResponseEntity.ok(Map.of("message", "Notificaciones marcadas como leídas", "updated", updated));
+    }
+
+    // 3. CONTADOR DE NO LEÍDAS (badge): total, mensajes y resto de notificaciones
+    @GetMapping("/unread-count/{username}")
+    public ResponseEntity<Map<String, Long>> getUnreadCount(@PathVariable("username") String username) {
+        return ResponseEntity.ok(activityService.unreadSummary(username));
     }
 }
\ No newline at end of file
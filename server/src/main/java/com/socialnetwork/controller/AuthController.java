@@ -2,6 +2,7 @@ package com.socialnetwork.controller;
 
 import com.socialnetwork.entity.User;
 import com.socialnetwork.repository.UserRepository;
+import com.socialnetwork.service.UserSearchService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -29,6 +30,9 @@ public class AuthController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserSearchService userSearchService;
+
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody User loginRequest) {
         try {
@@ -58,6 +62,7 @@ public class AuthController {
             return ResponseEntity.status(400).body(Map.of("error", "El nombre de usuario ya existe"));
         }
         User savedUser = userRepository.save(user);
+        userSearchService.onSaved(savedUser);
         return ResponseEntity.ok(savedUser);
     }
 }
\ No newline at end of file
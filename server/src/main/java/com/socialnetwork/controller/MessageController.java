@@ -1,8 +1,14 @@
 package com.socialnetwork.controller;
 
+import com.socialnetwork.dto.InboxEntry;
+import com.socialnetwork.dto.MessageEvent;
 import com.socialnetwork.entity.*;
 import com.socialnetwork.repository.*;
+import com.socialnetwork.service.ActivityService;
+import com.socialnetwork.service.ConversationService;
+import com.socialnetwork.service.EventStreamService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
@@ -19,9 +25,15 @@ import java.util.*;
 )
 public class MessageController {
 
+    // Tamaño de página por defecto y máximo de la conversación y de la bandeja
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     @Autowired private MessageRepository messageRepository;
     @Autowired private UserRepository userRepository;
-    @Autowired private ActivityRepository activityRepository;
+    @Autowired private ActivityService activityService;
+    @Autowired private ConversationService conversationService;
+    @Autowired private EventStreamService eventStreamService;
 
     // 1. ENVIAR MENSAJE
     @PostMapping("/send")
@@ -45,53 +57,70 @@ public class MessageController {
             msg.setContent(cleanContent);
             msg.setCreatedAt(LocalDateTime.now());
             messageRepository.save(msg);
+            conversationService.onMessage(msg);
+
+            // Tiempo real: al destinatario y a las otras pestañas del remitente
+            MessageEvent event = MessageEvent.of(msg);
+            eventStreamService.publish(to, "message", event);
+            eventStreamService.publish(from, "message", event);
 
             // Crear notificación de tipo MESSAGE
-            Activity act = new Activity();
-            act.setType("MESSAGE");
-            act.setActor(sender);
-            act.setRecipient(recipient);
-            act.setCreatedAt(LocalDateTime.now());
-            act.setRead(false);
-            activityRepository.save(act);
+            activityService.record(ActivityService.MESSAGE, sender, recipient, null);
             
             return ResponseEntity.ok(msg);
         }
         return ResponseEntity.badRequest().body(Map.of("error", "Datos de mensaje inválidos"));
     }
 
-    // 2. OBTENER CONVERSACIÓN ENTRE DOS USUARIOS
+    // 2. OBTENER CONVERSACIÓN ENTRE DOS USUARIOS (paginada, siempre en orden cronológico)
+    // Sin cursor: los últimos "limit" mensajes. before=id: los anteriores a ese mensaje (scroll hacia atrás).
+    // after=id: solo los posteriores (mensajes nuevos desde el último que tiene el cliente).
     @GetMapping("/conversation")
     public ResponseEntity<List<Message>> getChat(
-            @RequestParam("user1") String u1, @RequestParam("user2") String u2) {
+            @RequestParam("user1") String u1, @RequestParam("user2") String u2,
+            @RequestParam(value = "before", required = false) Long before,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", required = false) Integer limit) {
         
+        if (before != null && after != null) return ResponseEntity.badRequest().build();
+
         User user1 = userRepository.findByUsername(u1).orElse(null);
         User user2 = userRepository.findByUsername(u2).orElse(null);
         
         if (user1 != null && user2 != null) {
-            return ResponseEntity.ok(messageRepository.findConversation(user1, user2));
+            int size = (limit == null || limit < 1) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+            PageRequest page = PageRequest.of(0, size);
+
+            if (after != null) {
+                return ResponseEntity.ok(messageRepository.findConversationAfter(user1, user2, after, page));
+            }
+            List<Message> newestFirst = (before != null)
+                    ? messageRepository.findConversationBefore(user1, user2, before, page)
+                    : messageRepository.findConversationLatest(user1, user2, page);
+            List<Message> chat = new ArrayList<>(newestFirst);
+            Collections.reverse(chat);
+            return ResponseEntity.ok(chat);
         }
         return ResponseEntity.notFound().build();
     }
 
-    // 3. LISTADO DE CONTACTOS (Personas con las que se ha chateado)
+    // 3. LISTADO DE CONTACTOS (bandeja): personas con las que se ha chateado, la conversación más reciente primero,
+    // con la vista previa del último mensaje
     @GetMapping("/contacts/{username}")
-    public ResponseEntity<List<User>> getContacts(@PathVariable("username") String username) {
-        return ResponseEntity.ok(messageRepository.findChatPartners(username));
+    public ResponseEntity<List<InboxEntry>> getContacts(
+            @PathVariable("username") String username,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        User user = userRepository.findByUsername(username).orElse(null);
+        if (user == null) return ResponseEntity.notFound().build();
+
+        int size = (limit == null || limit < 1) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+        return ResponseEntity.ok(conversationService.inbox(user.getId(), size));
     }
 
-    // 4. CONTAR MENSAJES NO LEÍDOS POR CONTACTO
+    // 4. CONTAR MENSAJES NO LEÍDOS POR CONTACTO (solo aparecen los contactos con alguno sin leer)
     @GetMapping("/unread-counts/{username}")
     public ResponseEntity<Map<String, Long>> getUnreadCounts(@PathVariable("username") String username) {
-        List<User> partners = messageRepository.findChatPartners(username);
-        Map<String, Long> counts = new HashMap<>();
-        
-        for (User p : partners) {
-            long count = activityRepository.countByRecipientUsernameAndActorUsernameAndTypeAndIsReadFalse(
-                username, p.getUsername(), "MESSAGE");
-            counts.put(p.getUsername(), count);
-        }
-        return ResponseEntity.ok(counts);
+        return ResponseEntity.ok(activityService.unreadByActor(username, ActivityService.MESSAGE));
     }
 
     // 5. MARCAR MENSAJES COMO LEÍDOS
@@ -101,12 +130,11 @@ public class MessageController {
             @RequestParam("username") String username, 
             @RequestParam("from") String from) {
         
-        List<Activity> unread = activityRepository.findByRecipientUsernameAndTypeAndActorUsernameAndIsReadFalse(
-                username, "MESSAGE", from);
-        
-        unread.forEach(a -> a.setRead(true));
-        activityRepository.saveAll(unread);
+        long updated = activityService.markMessagesRead(username, from);
+        Optional<User> user = userRepository.findByUsername(username);
+        Optional<User> partner = userRepository.findByUsername(from);
+        if (user.isPresent() && partner.isPresent()) conversationService.markRead(user.get().getId(), partner.get().getId());
         
-        return ResponseEntity.ok(Map.of("message", "Mensajes marcados como leídos"));
+        return ResponseEntity.ok(Map.of("message", "Mensajes marcados como leídos", "updated", updated));
     }
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package com.socialnetwork.controller;
+
+import com.socialnetwork.service.ActivityPipeline;
+import com.socialnetwork.service.ActivityRetentionService;
+import com.socialnetwork.service.EventStreamService;
+import com.socialnetwork.service.ImageService;
+import com.socialnetwork.service.MediaDeliveryService;
+import com.socialnetwork.service.PostDeletionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+@RestController
+@RequestMapping({"/metrics", "/api/metrics"})
+@CrossOrigin(
+    origins = {"https://socialnetworkclient-oyjw.onrender.com", "http://localhost:3000"},
+    methods = {RequestMethod.GET, RequestMethod.OPTIONS},
+    allowedHeaders = "*"
+)
+public class MetricsController {
+
+    private static final String[] CACHE_ATTRIBUTES =
+            {"CacheGets", "CacheHits", "CacheMisses", "CacheHitPercentage", "CachePuts", "CacheEvictions", "CacheRemovals"};
+
+    @Autowired
+    private EventStreamService eventStreamService;
+
+    @Autowired
+    private ActivityPipeline activityPipeline;
+
+    @Autowired
+    private ActivityRetentionService activityRetentionService;
+
+    @Autowired
+    private MediaDeliveryService mediaDeliveryService;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private PostDeletionService postDeletionService;
+
+    // 1. CACHÉ DE SEGUNDO NIVEL: estadísticas JCache de cada región (ver ehcache.xml)
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Map<String, Object>>> getCacheMetrics() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Map<String, Map<String, Object>> regions = new TreeMap<>();
+        try {
+            for (ObjectName name : server.queryNames(new ObjectName("javax.cache:type=CacheStatistics,*"), null)) {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                for (String attribute : CACHE_ATTRIBUTES) {
+                    stats.put(attribute, server.getAttribute(name, attribute));
+                }
+                String region = name.getKeyProperty("Cache");
+                regions.put(region.startsWith("\"") ? ObjectName.unquote(region) : region, stats);
+            }
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+        return ResponseEntity.ok(regions);
+    }
+
+    // 2. CANAL EN TIEMPO REAL: conexiones abiertas, eventos entregados y descartados por buffers llenos
+    @GetMapping("/stream")
+    public ResponseEntity<Map<String, Long>> getStreamMetrics() {
+        return ResponseEntity.ok(eventStreamService.stats());
+    }
+
+    // 3. COLA DE NOTIFICACIONES: profundidad, lotes, anuladas (like/unlike), descartadas y fallidas
+    @GetMapping("/activities")
+    public ResponseEntity<Map<String, Long>> getActivityPipelineMetrics() {
+        return ResponseEntity.ok(activityPipeline.stats());
+    }
+
+    // 4. COMPACTACIÓN DE NOTIFICACIONES: filas liberadas (sustituidas, leídas caducadas, grupos) y última pasada
+    @GetMapping("/retention")
+    public ResponseEntity<Map<String, Long>> getRetentionMetrics() {
+        return ResponseEntity.ok(activityRetentionService.stats());
+    }
+
+    // 5. IMÁGENES: servidas, 304, rangos, envíos con sendfile y aciertos de la caché de ficheros
+    @GetMapping("/media")
+    public ResponseEntity<Map<String, Long>> getMediaMetrics() {
+        return ResponseEntity.ok(mediaDeliveryService.stats());
+    }
+
+    // 6. SUBIDAS DE IMÁGENES: procesadas, reutilizadas por hash, purgadas sin referencias y cola del pool
+    @GetMapping("/images")
+    public ResponseEntity<Map<String, Long>> getImageMetrics() {
+        return ResponseEntity.ok(imageService.stats());
+    }
+
+    // 7. BORRADO DE POSTS: purgas pendientes, terminadas y fallidas, posts purgados y tandas
+    @GetMapping("/deletions")
+    public ResponseEntity<Map<String, Long>> getDeletionMetrics() {
+        return ResponseEntity.ok(postDeletionService.stats());
+    }
+}
@@ -1,62 +1,81 @@
 package com.socialnetwork.controller;
 
+import com.socialnetwork.dto.FeedCursor;
+import com.socialnetwork.dto.MessageEvent;
+import com.socialnetwork.dto.PostDTO;
+import com.socialnetwork.dto.ThreadNode;
+import com.socialnetwork.dto.TimelineEntry;
+import com.socialnetwork.dto.TrendEntry;
 import com.socialnetwork.entity.*;
 import com.socialnetwork.repository.*;
+import com.socialnetwork.service.ActivityService;
+import com.socialnetwork.service.ConversationService;
+import com.socialnetwork.service.EngagementService;
+import com.socialnetwork.service.EventStreamService;
+import com.socialnetwork.service.ImageService;
+import com.socialnetwork.service.MediaDeliveryService;
+import com.socialnetwork.service.PostCounterService;
+import com.socialnetwork.service.PostDeletionService;
+import com.socialnetwork.service.PostSearchService;
+import com.socialnetwork.service.PostService;
+import com.socialnetwork.service.ThreadService;
+import com.socialnetwork.service.ViewerStateService;
+import com.socialnetwork.service.TimelineService;
+import com.socialnetwork.service.TrendingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.*;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping({"/posts", "/api/posts"})
 @CrossOrigin(
     origins = {"https://socialnetworkclient-oyjw.onrender.com", "http://localhost:3000"},
     methods = {RequestMethod.GET, RequestMethod.POST, RequestMethod.PUT, RequestMethod.PATCH, RequestMethod.DELETE, RequestMethod.OPTIONS},
-    allowedHeaders = "*"
+    allowedHeaders = "*",
+    exposedHeaders = FeedCursor.HEADER
 )
 public class PostController {
 
     @Autowired private PostRepository postRepository;
     @Autowired private UserRepository userRepository;
-    @Autowired private ActivityRepository activityRepository;
+    @Autowired private ActivityService activityService;
     @Autowired private MessageRepository messageRepository; 
-
-    private final Path root = Paths.get("uploads");
-
-    // --- MÉTODOS AUXILIARES DE SINCRONIZACIÓN ---
-
-    /**
-     * Busca todas las copias (reposts) y les copia EXACTAMENTE
-     * lo mismo que tiene el original: Números y LISTAS DE USUARIOS.
-     */
-    private void syncAllCopies(Post original) {
-        List<Post> copies = postRepository.findByOriginalPostId(original.getId());
-        for (Post copy : copies) {
-            // 1. Copiar contadores
-            copy.setLikesCount(original.getLikesCount());
-            copy.setRepostsCount(original.getRepostsCount());
-
-            // 2. 👇 COPIAR LAS LISTAS DE USUARIOS (¡ESTO ES LO QUE FALTABA!)
-            // Al copiar el Set de usuarios, la copia sabrá que TÚ estás en la lista,
-            // y el frontend pintará el corazón ROJO.
-            copy.setLikedByUsers(new HashSet<>(original.getLikedByUsers()));
-            copy.setRepostedByUsers(new HashSet<>(original.getRepostedByUsers()));
-        }
-        postRepository.saveAll(copies);
-    }
+    @Autowired private TimelineService timelineService;
+    @Autowired private EngagementService engagementService;
+    @Autowired private PostCounterService postCounterService;
+    @Autowired private PostService postService;
+    @Autowired private ViewerStateService viewerStateService;
+    @Autowired private EventStreamService eventStreamService;
+    @Autowired private ConversationService conversationService;
+    @Autowired private PostSearchService postSearchService;
+    @Autowired private TrendingService trendingService;
+    @Autowired private ImageService imageService;
+    @Autowired private MediaDeliveryService mediaDeliveryService;
+    @Autowired private ThreadService threadService;
+    @Autowired private PostDeletionService postDeletionService;
+
+    // Tamaño de página por defecto y máximo para los feeds paginados
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 50;
 
     // 1. OBTENER UN POST POR ID
     @GetMapping("/{id}")
-    public ResponseEntity<Post> getPostById(@PathVariable("id") Long id) {
-        return postRepository.findById(id)
+    public ResponseEntity<PostDTO> getPostById(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "viewer", required = false) String viewer) {
+        return postService.getView(id, viewer)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -83,27 +102,37 @@ public class PostController {
 
         if (file != null && !file.isEmpty()) {
             try {
-                if (!Files.exists(root)) Files.createDirectories(root);
-                String fileName = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-                Files.copy(file.getInputStream(), this.root.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
-                post.setImageUrl("/api/posts/images/" + fileName);
+                // Re-codificada, sin metadatos y con su versión reducida para el feed
+                String fileName = imageService.store(file, ImageService.Kind.POST);
+                post.setImageUrl(ImageService.URL_PREFIX + fileName);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            } catch (RejectedExecutionException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Servidor ocupado, inténtalo de nuevo");
             } catch (IOException e) {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error al guardar la imagen");
             }
         }
 
         if (parentId != null) {
-            postRepository.findById(parentId).ifPresent(parent -> {
+            postRepository.findById(parentId).filter(parent -> !parent.isDeleted()).ifPresent(parent -> {
                 post.setParentPost(parent);
                 parent.setRepliesCount(parent.getRepliesCount() + 1);
                 postRepository.save(parent);
             });
         }
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(postRepository.save(post));
+        Post saved = postRepository.save(post);
+        imageService.acquire(saved.getImageUrl());
+        timelineService.onPostCreated(saved);
+        postSearchService.onPostCreated(saved);
+        trendingService.onPostCreated(saved);
+        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
     }
 
     // 3. ELIMINAR POST
+    // El post y su hilo dejan de verse en el acto; el subárbol (respuestas y reposts) se purga en segundo
+    // plano. 202 con el progreso de la purga, que se puede seguir en GET /{id}/deletion
     @DeleteMapping("/{id}")
     @Transactional
     public ResponseEntity<?> deletePost(
@@ -113,108 +142,93 @@ public class PostController {
         
         Optional<Post> postOpt = postRepository.findById(id);
         if (postOpt.isEmpty()) return ResponseEntity.notFound().build();
-        Post post = postOpt.get();
-
-        activityRepository.deleteByPost(post);
-        post.getLikedByUsers().clear();
-        post.getRepostedByUsers().clear();
-        
-        List<Message> sharedInMessages = messageRepository.findBySharedPost(post);
-        sharedInMessages.forEach(msg -> msg.setSharedPost(null));
-        messageRepository.saveAll(sharedInMessages);
-
-        List<Post> reposts = postRepository.findByOriginalPostId(id);
-        postRepository.deleteAll(reposts);
-
-        List<Post> replies = postRepository.findByParentPost(post);
-        postRepository.deleteAll(replies);
 
-        if (post.getParentPost() != null) {
-            Post parent = post.getParentPost();
-            parent.setRepliesCount(Math.max(0, parent.getRepliesCount() - 1));
-            postRepository.save(parent);
-        }
+        PostDeletionService.Progress progress = postDeletionService.delete(postOpt.get());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("message", "Post eliminado", "deletion", progress));
+    }
 
-        postRepository.delete(post);
-        return ResponseEntity.ok().body(Map.of("message", "Post eliminado"));
+    @GetMapping("/{id}/deletion")
+    public ResponseEntity<PostDeletionService.Progress> getDeletionProgress(@PathVariable("id") Long id) {
+        return postDeletionService.progress(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     // 4. LIKE / UNLIKE
     @PatchMapping("/{id}/like")
     @Transactional
     public ResponseEntity<?> likePost(@PathVariable("id") Long id, @RequestParam("username") String username) {
-        Optional<Post> targetPostOpt = postRepository.findById(id);
+        Optional<Post> targetPostOpt = postRepository.findById(id).filter(p -> !p.isDeleted());
         Optional<User> userOpt = userRepository.findByUsername(username);
 
         if (targetPostOpt.isPresent() && userOpt.isPresent()) {
             Post targetPost = targetPostOpt.get();
             User user = userOpt.get();
 
-            Long realOriginalId = (targetPost.getOriginalPostId() != null) 
-                                  ? targetPost.getOriginalPostId() 
-                                  : targetPost.getId();
+            Long realOriginalId = engagementService.canonicalId(targetPost);
             
             Post original = postRepository.findById(realOriginalId).orElse(targetPost);
 
-            if (original.getLikedByUsers().contains(user)) {
-                original.getLikedByUsers().remove(user);
-                original.setLikesCount(Math.max(0, original.getLikesCount() - 1));
+            // Se comprueba y se cambia la fila (post_id, user_id): no se carga la lista de quienes dieron like
+            int delta;
+            if (postRepository.existsLike(original.getId(), user.getId())) {
+                delta = -postRepository.deleteLike(original.getId(), user.getId());
+                // Like y unlike seguidos: la notificación no llega a guardarse
+                cancelActivity("LIKE", user, original.getUser(), original);
             } else {
-                original.getLikedByUsers().add(user);
-                original.setLikesCount(original.getLikesCount() + 1);
+                delta = postRepository.insertLike(original.getId(), user.getId());
+                viewerStateService.onEngaged(user.getUsername(), original.getId());
                 createActivity("LIKE", user, original.getUser(), original);
             }
-            
-            postRepository.save(original);
 
-            // Sincronizamos (Esto copiará la lista actualizada a las copias)
-            syncAllCopies(original);
+            // Solo se escribe el original: los reposts leen su estado de él.
+            // El contador no se toca aquí, lo acumula PostCounterService y se vuelca en lote.
+            postCounterService.addLikes(original.getId(), delta);
 
-            return ResponseEntity.ok(original);
+            // El delta de esta petición se aplica al confirmar; lo sumamos a mano en la respuesta
+            Optional<PostDTO> view = postService.getView(original.getId(), username);
+            if (view.isEmpty()) return ResponseEntity.notFound().build();
+            view.get().setLikesCount(Math.max(0, view.get().getLikesCount() + delta));
+            return ResponseEntity.ok(view.get());
         }
         return ResponseEntity.notFound().build();
     }
 
-    // 5. REPOST (MEJORADO: Nace con la lista de likes correcta)
+    // 5. REPOST (la copia no duplica likes/reposts: los lee del original)
     @PostMapping("/{id}/repost")
     @Transactional
     public ResponseEntity<?> repostPost(@PathVariable("id") Long id, @RequestParam("username") String username) {
-        Optional<Post> targetPostOpt = postRepository.findById(id);
+        Optional<Post> targetPostOpt = postRepository.findById(id).filter(p -> !p.isDeleted());
         Optional<User> userWhoRepostsOpt = userRepository.findByUsername(username);
 
         if (targetPostOpt.isPresent() && userWhoRepostsOpt.isPresent()) {
             Post targetPost = targetPostOpt.get();
             User me = userWhoRepostsOpt.get();
 
-            Long realOriginalId = (targetPost.getOriginalPostId() != null) 
-                                  ? targetPost.getOriginalPostId() 
-                                  : targetPost.getId();
+            Long realOriginalId = engagementService.canonicalId(targetPost);
 
             Post originalRoot = postRepository.findById(realOriginalId)
                                 .orElse(targetPost.getOriginalPostId() != null ? targetPost : targetPost);
 
-            boolean isAlreadyReposted = originalRoot.getRepostedByUsers().contains(me);
+            boolean isAlreadyReposted = postRepository.existsRepost(originalRoot.getId(), me.getId());
 
             if (isAlreadyReposted) {
                 // Toggle OFF
-                originalRoot.getRepostedByUsers().remove(me);
-                originalRoot.setRepostsCount(Math.max(0, originalRoot.getRepostsCount() - 1));
-                postRepository.save(originalRoot);
+                postCounterService.addReposts(originalRoot.getId(), -postRepository.deleteRepost(originalRoot.getId(), me.getId()));
+                cancelActivity("REPOST", me, originalRoot.getUser(), originalRoot);
 
-                Optional<Post> repostCopy = postRepository.findAll().stream()
-                    .filter(p -> p.getUser().getId().equals(me.getId()) && 
-                                 realOriginalId.equals(p.getOriginalPostId()))
-                    .findFirst();
-                repostCopy.ifPresent(postRepository::delete);
+                Optional<Post> repostCopy = postRepository.findByUserIdAndOriginalPostId(me.getId(), realOriginalId);
+                repostCopy.ifPresent(copy -> {
+                    timelineService.onPostDeleted(copy);
+                    postRepository.delete(copy);
+                });
 
-                syncAllCopies(originalRoot);
                 return ResponseEntity.ok(Map.of("message", "Repost eliminado"));
 
             } else {
                 // Toggle ON
-                originalRoot.getRepostedByUsers().add(me);
-                originalRoot.setRepostsCount(originalRoot.getRepostsCount() + 1);
-                postRepository.save(originalRoot);
+                postCounterService.addReposts(originalRoot.getId(), postRepository.insertRepost(originalRoot.getId(), me.getId()));
+                viewerStateService.onEngaged(me.getUsername(), originalRoot.getId());
 
                 Post repost = new Post();
                 repost.setContent(originalRoot.getContent());
@@ -224,17 +238,8 @@ public class PostController {
                 repost.setRepostFromUserName(me.getDisplayName()); 
                 repost.setOriginalPostId(originalRoot.getId());
                 
-                // 👇 ESTO FALTABA:
-                // Copiamos los números...
-                repost.setLikesCount(originalRoot.getLikesCount());
-                repost.setRepostsCount(originalRoot.getRepostsCount());
-                // ... Y copiamos las LISTAS de usuarios
-                repost.setLikedByUsers(new HashSet<>(originalRoot.getLikedByUsers()));
-                repost.setRepostedByUsers(new HashSet<>(originalRoot.getRepostedByUsers()));
-                
                 postRepository.save(repost);
-                
-                syncAllCopies(originalRoot);
+                timelineService.onPostCreated(repost);
                 
                 createActivity("REPOST", me, originalRoot.getUser(), originalRoot);
                 return ResponseEntity.ok(Map.of("message", "Repost creado"));
@@ -251,7 +256,7 @@ public class PostController {
             @RequestParam("from") String fromUsername, 
             @RequestParam("to") String toUsername) {
         
-        Optional<Post> postOpt = postRepository.findById(id);
+        Optional<Post> postOpt = postRepository.findById(id).filter(p -> !p.isDeleted());
         Optional<User> senderOpt = userRepository.findByUsername(fromUsername);
         Optional<User> receiverOpt = userRepository.findByUsername(toUsername);
 
@@ -268,6 +273,10 @@ public class PostController {
             message.setCreatedAt(LocalDateTime.now());
             
             messageRepository.save(message);
+            conversationService.onMessage(message);
+            MessageEvent event = MessageEvent.of(message);
+            eventStreamService.publish(toUsername, "message", event);
+            eventStreamService.publish(fromUsername, "message", event);
             createActivity("SHARE_MSG", sender, receiver, post);
             
             return ResponseEntity.ok(Map.of("message", "Post compartido en el chat"));
@@ -276,71 +285,173 @@ public class PostController {
     }
 
     // 7. GETTERS
+    // Todos devuelven vistas ligeras (PostDTO); "viewer" es el usuario que mira, para likedByMe/repostedByMe
     @GetMapping
-    public ResponseEntity<List<Post>> getAllPosts() {
-        return ResponseEntity.ok(postRepository.findAllByParentPostIsNullOrderByCreatedAtDesc());
+    public ResponseEntity<List<PostDTO>> getAllPosts(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "viewer", required = false) String viewer) {
+        return page(cursor, limit, viewer, postRepository::findRootEntries,
+                (after, page) -> postRepository.findRootEntriesBefore(after.createdAt(), after.id(), page));
+    }
+
+    // Búsqueda por contenido: posts con todas las palabras, ordenados por relevancia y recencia
+    @GetMapping("/search")
+    public ResponseEntity<List<PostDTO>> searchPosts(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "viewer", required = false) String viewer) {
+        return ResponseEntity.ok(postService.getViews(postSearchService.search(query, pageSize(limit)), viewer));
+    }
+
+    // Tendencias de la ventana reciente (hashtags y palabras), sin leer la tabla posts
+    @GetMapping("/trending")
+    public ResponseEntity<Map<String, List<TrendEntry>>> getTrending(
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        int size = (limit == null || limit <= 0) ? 10 : Math.min(limit, MAX_PAGE_SIZE);
+        return ResponseEntity.ok(Map.of(
+                "hashtags", trendingService.topHashtags(size),
+                "terms", trendingService.topTerms(size)));
     }
 
+    // Estado del viewer para una página de posts que el cliente ya tiene (ids separados por comas)
+    @GetMapping("/viewer-state")
+    public ResponseEntity<Map<String, Set<Long>>> getViewerState(
+            @RequestParam("viewer") String viewer,
+            @RequestParam("ids") List<Long> ids) {
+        if (ids.size() > MAX_PAGE_SIZE) return ResponseEntity.badRequest().build();
+        ViewerStateService.ViewerState state = viewerStateService.resolve(viewer, ids);
+        return ResponseEntity.ok(Map.of("liked", state.liked(), "reposted", state.reposted()));
+    }
+
+    // Pestañas del perfil y respuestas de un post: mismas páginas por cursor que el feed (X-Next-Cursor)
     @GetMapping("/user/{username}/threads")
-    public ResponseEntity<List<Post>> getUserThreads(@PathVariable("username") String username) {
-        return ResponseEntity.ok(postRepository.findByUserUsernameAndParentPostIsNullOrderByCreatedAtDesc(username));
+    public ResponseEntity<List<PostDTO>> getUserThreads(
+            @PathVariable("username") String username,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "viewer", required = false) String viewer) {
+        return page(cursor, limit, viewer,
+                page -> postRepository.findThreadEntriesByUsername(username, page),
+                (after, page) -> postRepository.findThreadEntriesByUsernameBefore(username, after.createdAt(), after.id(), page));
     }
 
     @GetMapping("/user/{username}/replies")
-    public ResponseEntity<List<Post>> getUserReplies(@PathVariable("username") String username) {
-        return ResponseEntity.ok(postRepository.findByUserUsernameAndParentPostIsNotNullOrderByCreatedAtDesc(username));
+    public ResponseEntity<List<PostDTO>> getUserReplies(
+            @PathVariable("username") String username,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "viewer", required = false) String viewer) {
+        return page(cursor, limit, viewer,
+                page -> postRepository.findReplyEntriesByUsername(username, page),
+                (after, page) -> postRepository.findReplyEntriesByUsernameBefore(username, after.createdAt(), after.id(), page));
     }
 
     @GetMapping("/user/{username}/reposts")
-    public ResponseEntity<List<Post>> getUserReposts(@PathVariable("username") String username) {
-        return ResponseEntity.ok(postRepository.findByUserUsernameAndOriginalPostIdIsNotNullOrderByCreatedAtDesc(username));
+    public ResponseEntity<List<PostDTO>> getUserReposts(
+            @PathVariable("username") String username,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "viewer", required = false) String viewer) {
+        return page(cursor, limit, viewer,
+                page -> postRepository.findRepostEntriesByUsername(username, page),
+                (after, page) -> postRepository.findRepostEntriesByUsernameBefore(username, after.createdAt(), after.id(), page));
     }
 
     @GetMapping("/{id}/replies")
-    public ResponseEntity<List<Post>> getReplies(@PathVariable("id") Long id) {
-        return ResponseEntity.ok(postRepository.findByParentPostIdOrderByCreatedAtDesc(id));
+    public ResponseEntity<List<PostDTO>> getReplies(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "viewer", required = false) String viewer) {
+        return page(cursor, limit, viewer,
+                page -> postRepository.findReplyEntries(id, page),
+                (after, page) -> postRepository.findReplyEntriesBefore(id, after.createdAt(), after.id(), page));
+    }
+
+    // Hilo: el post con su árbol de respuestas (más antiguas primero), acotado en profundidad ("depth"),
+    // respuestas por post ("branch") y total ("limit"). Con "cursor" (nextCursor de un nodo) devuelve
+    // las siguientes respuestas de ese post, cada una con su subárbol
+    @GetMapping("/{id}/thread")
+    public ResponseEntity<ThreadNode> getThread(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "depth", required = false) Integer depth,
+            @RequestParam(value = "branch", required = false) Integer branch,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "viewer", required = false) String viewer) {
+        FeedCursor after = FeedCursor.decode(cursor);
+        if (cursor != null && !cursor.isBlank() && after == null) return ResponseEntity.badRequest().build();
+
+        return threadService.getThread(id, after, depth, branch, limit, viewer)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/following/{username}")
-    public ResponseEntity<List<Post>> getFollowingPosts(@PathVariable("username") String username) {
+    public ResponseEntity<List<PostDTO>> getFollowingPosts(
+            @PathVariable("username") String username,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
         Optional<User> userOpt = userRepository.findByUsername(username);
         if (userOpt.isEmpty()) return ResponseEntity.notFound().build();
 
-        User currentUser = userOpt.get();
-        List<User> following = currentUser.getFollowing(); 
+        FeedCursor after = FeedCursor.decode(cursor);
+        if (cursor != null && !cursor.isBlank() && after == null) return ResponseEntity.badRequest().build();
 
-        if (following == null || following.isEmpty()) return ResponseEntity.ok(Collections.emptyList());
-
-        List<Post> posts = postRepository.findByUserInAndParentPostIsNullOrderByCreatedAtDesc(following);
-        return ResponseEntity.ok(posts);
+        // Los ids salen del timeline materializado; el que mira es el dueño del timeline
+        int pageSize = pageSize(limit);
+        List<TimelineEntry> entries = timelineService.page(userOpt.get().getId(), after, pageSize);
+        return withNextCursor(entries, postService.getViews(entries.stream().map(TimelineEntry::postId).toList(), username),
+                pageSize);
     }
 
     // 8. SERVIR IMAGENES
+    // "size" elige una versión reducida (feed para posts, sm/md para avatares); si no existe, la principal.
+    // ETag, caché, 304 y rangos en MediaDeliveryService
     @GetMapping("/images/{filename:.+}")
-    public ResponseEntity<Resource> getImage(@PathVariable("filename") String filename) {
-        try {
-            Path file = root.resolve(filename);
-            Resource resource = new UrlResource(file.toUri());
-            if (resource.exists() || resource.isReadable()) {
-                return ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_TYPE, Files.probeContentType(file))
-                        .body(resource);
-            }
-            return ResponseEntity.notFound().build();
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    public void getImage(
+            @PathVariable("filename") String filename,
+            @RequestParam(value = "size", required = false) String size,
+            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        mediaDeliveryService.serve(filename, size, request, response);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null || limit <= 0) return DEFAULT_PAGE_SIZE;
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    // Página por cursor (createdAt, id): la primera con "first", las siguientes con "before"
+    private ResponseEntity<List<PostDTO>> page(String cursor, Integer limit, String viewer,
+                                               Function<PageRequest, List<TimelineEntry>> first,
+                                               BiFunction<FeedCursor, PageRequest, List<TimelineEntry>> before) {
+        FeedCursor after = FeedCursor.decode(cursor);
+        if (cursor != null && !cursor.isBlank() && after == null) return ResponseEntity.badRequest().build();
+
+        PageRequest page = PageRequest.of(0, pageSize(limit));
+        List<TimelineEntry> entries = (after == null) ? first.apply(page) : before.apply(after, page);
+        List<Long> ids = entries.stream().map(TimelineEntry::postId).toList();
+        return withNextCursor(entries, postService.getViews(ids, viewer), page.getPageSize());
+    }
+
+    // Si la página vino llena, la última entrada seleccionada es el cursor de la siguiente: aunque alguna
+    // vista se cayera entre las dos consultas (borrado a la vez), el cursor avanza y el feed no se corta
+    private ResponseEntity<List<PostDTO>> withNextCursor(List<TimelineEntry> entries, List<PostDTO> posts, int pageSize) {
+        if (entries.isEmpty() || entries.size() < pageSize) return ResponseEntity.ok(posts);
+        TimelineEntry last = entries.get(entries.size() - 1);
+        return ResponseEntity.ok()
+                .header(FeedCursor.HEADER, new FeedCursor(last.createdAt(), last.postId()).encode())
+                .body(posts);
     }
 
     private void createActivity(String type, User actor, User recipient, Post post) {
         if (actor.getUsername().equals(recipient.getUsername()) && !type.equals("SHARE_MSG")) return;
-        Activity act = new Activity();
-        act.setType(type);
-        act.setActor(actor);
-        act.setRecipient(recipient);
-        act.setPost(post);
-        act.setCreatedAt(LocalDateTime.now());
-        act.setRead(false);
-        activityRepository.save(act);
+        activityService.record(type, actor, recipient, post);
+    }
+
+    private void cancelActivity(String type, User actor, User recipient, Post post) {
+        if (actor.getUsername().equals(recipient.getUsername())) return;
+        activityService.cancel(type, actor, recipient, post);
     }
 }
\ No newline at end of file
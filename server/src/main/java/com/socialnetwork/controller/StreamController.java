@@ -0,0 +1,30 @@
+package com.socialnetwork.controller;
+
+import com.socialnetwork.repository.UserRepository;
+import com.socialnetwork.service.EventStreamService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping({"/stream", "/api/stream"})
+@CrossOrigin(
+    origins = {"https://socialnetworkclient-oyjw.onrender.com", "http://localhost:3000"},
+    methods = {RequestMethod.GET, RequestMethod.OPTIONS},
+    allowedHeaders = "*"
+)
+public class StreamController {
+
+    @Autowired private EventStreamService eventStreamService;
+    @Autowired private UserRepository userRepository;
+
+    // 1. CANAL EN TIEMPO REAL (Server-Sent Events): mensajes ("message"), notificaciones ("activity")
+    // y "resync" si el cliente se quedó atrás y debe recargar por REST
+    @GetMapping(value = "/{username}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@PathVariable("username") String username) {
+        if (userRepository.findByUsername(username).isEmpty()) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(eventStreamService.subscribe(username));
+    }
+}
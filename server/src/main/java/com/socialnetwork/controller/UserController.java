@@ -1,9 +1,11 @@
 package com.socialnetwork.controller;
 
-import com.socialnetwork.entity.Activity;
 import com.socialnetwork.entity.User;
-import com.socialnetwork.repository.ActivityRepository;
 import com.socialnetwork.repository.UserRepository;
+import com.socialnetwork.service.ActivityService;
+import com.socialnetwork.service.ImageService;
+import com.socialnetwork.service.TimelineService;
+import com.socialnetwork.service.UserSearchService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -13,12 +15,10 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.*;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 // 👇 CORRECCIÓN: Escuchamos en AMBAS rutas para evitar errores 404
@@ -34,9 +34,20 @@ public class UserController {
     private UserRepository userRepository;
 
     @Autowired
-    private ActivityRepository activityRepository;
+    private ActivityService activityService;
 
-    private final Path root = Paths.get("uploads");
+    @Autowired
+    private TimelineService timelineService;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private ImageService imageService;
+
+    // Resultados del buscador por defecto y como máximo
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SEARCH_LIMIT = 50;
 
     // 1. OBTENER USUARIO POR USERNAME (Para ver perfiles)
     @GetMapping("/{username}")
@@ -78,6 +89,13 @@ public class UserController {
                 userRepository.save(follower);
                 userRepository.save(target);
 
+                // Quitamos sus posts del timeline "Siguiendo"
+                timelineService.onUnfollow(follower.getId(), target.getId());
+                userSearchService.onFollowersChanged(target.getId(), -1);
+
+                // Follow y unfollow seguidos: la notificación no llega a guardarse
+                activityService.cancel("FOLLOW", follower, target, null);
+
                 return ResponseEntity.ok(Map.of("message", "Dejaste de seguir a " + targetUsername, "following", false));
             } else {
                 // --- FOLLOW ---
@@ -88,6 +106,8 @@ public class UserController {
                 // Guardamos AMBOS
                 userRepository.save(follower);
                 userRepository.save(target);
+                timelineService.onFollow(follower.getId());
+                userSearchService.onFollowersChanged(target.getId(), 1);
                 
                 // Crear notificación
                 createFollowActivity(follower, target);
@@ -98,10 +118,13 @@ public class UserController {
         return ResponseEntity.notFound().build();
     }
 
-    // 3. BUSCADOR DE USUARIOS
+    // 3. BUSCADOR DE USUARIOS (índice en memoria: exactos y prefijos primero, luego por seguidores)
     @GetMapping("/search")
-    public ResponseEntity<List<User>> searchUsers(@RequestParam("q") String query) {
-        return ResponseEntity.ok(userRepository.findByUsernameContainingIgnoreCaseOrDisplayNameContainingIgnoreCase(query, query));
+    public ResponseEntity<List<User>> searchUsers(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        int size = (limit == null || limit < 1) ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+        return ResponseEntity.ok(userSearchService.search(query, size));
     }
 
     // 4. ACTUALIZAR PERFIL (Texto)
@@ -112,7 +135,9 @@ public class UserController {
         return userRepository.findByUsername(username).map(user -> {
             user.setDisplayName(details.getDisplayName());
             user.setBio(details.getBio());
-            return ResponseEntity.ok(userRepository.save(user));
+            User saved = userRepository.save(user);
+            userSearchService.onSaved(saved);
+            return ResponseEntity.ok(saved);
         }).orElse(ResponseEntity.notFound().build());
     }
 
@@ -129,15 +154,21 @@ public class UserController {
 
         if (file != null && !file.isEmpty()) {
             try {
-                if (!Files.exists(root)) Files.createDirectories(root);
-                String fileName = "avatar_" + UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-                Files.copy(file.getInputStream(), this.root.resolve(fileName), StandardCopyOption.REPLACE_EXISTING);
+                // Recortada cuadrada, sin metadatos y con sus tamaños pequeños (sm/md)
+                String fileName = imageService.store(file, ImageService.Kind.AVATAR);
 
                 // Mantenemos la ruta compatible con el sistema de imágenes
-                user.setAvatarUrl("/api/posts/images/" + fileName);
+                String previous = user.getAvatarUrl();
+                user.setAvatarUrl(ImageService.URL_PREFIX + fileName);
                 userRepository.save(user);
+                imageService.acquire(user.getAvatarUrl());
+                imageService.release(previous);
 
                 return ResponseEntity.ok(user);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            } catch (RejectedExecutionException e) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Servidor ocupado, inténtalo de nuevo");
             } catch (IOException e) {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                         .body("Error al procesar la subida del avatar");
@@ -148,12 +179,6 @@ public class UserController {
 
     // Helper para notificaciones
     private void createFollowActivity(User actor, User recipient) {
-        Activity act = new Activity();
-        act.setType("FOLLOW");
-        act.setActor(actor);
-        act.setRecipient(recipient);
-        act.setCreatedAt(LocalDateTime.now());
-        act.setRead(false);
-        activityRepository.save(act);
+        activityService.record("FOLLOW", actor, recipient, null);
     }
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.socialnetwork.dto;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Notificación nueva enviada por el canal en tiempo real, con los contadores de no leídas ya
+ * actualizados (badge y mensajes por contacto) para que el cliente no tenga que pedirlos.
+ */
+public record ActivityEvent(String type, String actor, Long postId, LocalDateTime createdAt,
+                            Map<String, Long> unread, Map<String, Long> unreadMessages) {
+}
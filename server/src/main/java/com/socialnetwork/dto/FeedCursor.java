@@ -0,0 +1,29 @@
+package com.socialnetwork.dto;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Cursor de paginación por clave (keyset) para los feeds: (createdAt, id) del último post entregado.
+ * Se serializa como "2024-05-01T10:15:30.123_42" y viaja en la cabecera X-Next-Cursor.
+ */
+public record FeedCursor(LocalDateTime createdAt, Long id) {
+
+    public static final String HEADER = "X-Next-Cursor";
+
+    public String encode() {
+        return createdAt + "_" + id;
+    }
+
+    // Devuelve null si el cursor no es válido (el controlador responde 400)
+    public static FeedCursor decode(String raw) {
+        if (raw == null || raw.isBlank()) return null;
+        int sep = raw.lastIndexOf('_');
+        if (sep <= 0 || sep == raw.length() - 1) return null;
+        try {
+            return new FeedCursor(LocalDateTime.parse(raw.substring(0, sep)), Long.parseLong(raw.substring(sep + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.socialnetwork.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fila de la bandeja de mensajes: el contacto (mismos campos que usaba la lista de User)
+ * más el resumen de la conversación.
+ */
+public record InboxEntry(String username, String displayName, String avatarUrl,
+                         Long lastMessageId, String lastMessagePreview, boolean lastFromMe,
+                         LocalDateTime lastMessageAt, int unreadCount) {
+}
@@ -0,0 +1,21 @@
+package com.socialnetwork.dto;
+
+import com.socialnetwork.entity.Message;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mensaje tal como viaja por el canal en tiempo real: usernames en lugar de los User completos.
+ */
+public record MessageEvent(Long id, String sender, String recipient, String content, Long sharedPostId, LocalDateTime createdAt) {
+
+    public static MessageEvent of(Message msg) {
+        return new MessageEvent(
+                msg.getId(),
+                msg.getSender().getUsername(),
+                msg.getRecipient().getUsername(),
+                msg.getContent(),
+                msg.getSharedPost() != null ? msg.getSharedPost().getId() : null,
+                msg.getCreatedAt());
+    }
+}
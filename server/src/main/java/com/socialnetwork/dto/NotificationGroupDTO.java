@@ -0,0 +1,48 @@
+package com.socialnetwork.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.socialnetwork.entity.NotificationGroup;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Grupo de notificaciones tal como lo pinta la página de actividad: tipo, cuántas notificaciones
+ * agrupa, unos pocos actores de muestra y un resumen del post.
+ * Se construye en la consulta (NotificationGroupRepository); los actores los rellena NotificationGroupService.
+ */
+@Data
+@NoArgsConstructor
+public class NotificationGroupDTO {
+    private Long id;
+    private String type;
+    private int count;
+    private List<PostDTO.Author> actors;
+    private PostSummary post;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
+    private LocalDateTime updatedAt;
+
+    private boolean read;
+
+    @JsonIgnore
+    private List<String> sampleUsernames;
+
+    // Orden de argumentos = orden del SELECT new ... de la consulta
+    public NotificationGroupDTO(Long id, String type, int count, String sampleActors,
+                                Long postId, String postContent, String postImageUrl,
+                                LocalDateTime updatedAt, int unreadCount) {
+        this.id = id;
+        this.type = type;
+        this.count = count;
+        this.sampleUsernames = NotificationGroup.parseSample(sampleActors);
+        this.post = (postId != null) ? new PostSummary(postId, postContent, postImageUrl) : null;
+        this.updatedAt = updatedAt;
+        this.read = unreadCount == 0;
+    }
+
+    public record PostSummary(Long id, String content, String imageUrl) {}
+}
@@ -1,13 +1,62 @@
 package com.socialnetwork.dto; // Asegúrate de que el paquete coincida con la carpeta
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Data; // ESTA ES LA LÍNEA QUE FALTA
+import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
+/**
+ * Vista ligera de un post para los feeds: campos del post, resumen del autor, contadores
+ * (los del original si es un repost) y si el usuario que mira ya le dio like / lo reposteó.
+ * Se construye directamente en la consulta (ver PostRepository.findViewsByIds), sin cargar entidades;
+ * likedByMe/repostedByMe los rellena después ViewerStateService para toda la página.
+ */
 @Data // Esta anotación ahora funcionará correctamente
+@NoArgsConstructor
 public class PostDTO {
     private Long id;
     private String content;
+    private String imageUrl;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
     private LocalDateTime createdAt;
-    private String username;
-    private String displayName;
-}
\ No newline at end of file
+
+    private int likesCount;
+    private int repliesCount;
+    private int repostsCount;
+
+    private String repostFromUserName;
+    private Long originalPostId;
+    private Long parentId;
+
+    private Author user;
+
+    private boolean likedByMe;
+    private boolean repostedByMe;
+
+    // Orden de argumentos = orden del SELECT new ... de la consulta
+    public PostDTO(Long id, String content, String imageUrl, LocalDateTime createdAt,
+                   Integer likesCount, Integer repliesCount, Integer repostsCount,
+                   String repostFromUserName, Long originalPostId, Long parentId,
+                   String username, String displayName, String avatarUrl) {
+        this.id = id;
+        this.content = content;
+        this.imageUrl = imageUrl;
+        this.createdAt = createdAt;
+        this.likesCount = (likesCount == null) ? 0 : likesCount;
+        this.repliesCount = (repliesCount == null) ? 0 : repliesCount;
+        this.repostsCount = (repostsCount == null) ? 0 : repostsCount;
+        this.repostFromUserName = repostFromUserName;
+        this.originalPostId = originalPostId;
+        this.parentId = parentId;
+        this.user = new Author(username, displayName, avatarUrl);
+    }
+
+    // Id del post que guarda likes/reposts (el original si es un repost)
+    public Long canonicalId() {
+        return (originalPostId != null) ? originalPostId : id;
+    }
+
+    // Resumen del autor: lo justo para pintar la tarjeta
+    public record Author(String username, String displayName, String avatarUrl) {}
+}
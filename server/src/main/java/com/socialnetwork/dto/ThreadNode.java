@@ -0,0 +1,11 @@
+package com.socialnetwork.dto;
+
+import java.util.List;
+
+/**
+ * Un post del hilo con sus respuestas (más antiguas primero). moreReplies son las respuestas
+ * directas que no se incluyeron; si hay nextCursor, se piden con
+ * /api/posts/{id}/thread?cursor=... y van después de las que ya están.
+ */
+public record ThreadNode(PostDTO post, List<ThreadNode> replies, int moreReplies, String nextCursor) {
+}
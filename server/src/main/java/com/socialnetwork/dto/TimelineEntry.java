@@ -0,0 +1,17 @@
+package com.socialnetwork.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entrada del timeline materializado: solo lo necesario para ordenar y recortar,
+ * el post completo se carga al servir la página.
+ */
+public record TimelineEntry(Long postId, Long authorId, LocalDateTime createdAt) {
+
+    // Mismo orden que el feed: createdAt DESC, id DESC
+    public boolean isBefore(FeedCursor cursor) {
+        if (cursor == null) return true;
+        int cmp = createdAt.compareTo(cursor.createdAt());
+        return cmp < 0 || (cmp == 0 && postId < cursor.id());
+    }
+}
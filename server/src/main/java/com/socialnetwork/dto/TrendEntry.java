@@ -0,0 +1,8 @@
+package com.socialnetwork.dto;
+
+/**
+ * Hashtag o palabra en tendencia con su número aproximado de posts en la ventana
+ * (estimado con Count-Min: nunca por debajo del real).
+ */
+public record TrendEntry(String term, long count) {
+}
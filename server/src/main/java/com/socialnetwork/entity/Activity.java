@@ -4,7 +4,12 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "activities")
+@Table(name = "activities", indexes = {
+    // Notificaciones de un usuario por tipo: marcas de lectura y conteo de no leídas
+    @Index(name = "idx_activities_recipient_type", columnList = "recipient_id, type, id"),
+    // Horizonte de retención (ActivityRetentionService)
+    @Index(name = "idx_activities_created_at", columnList = "created_at")
+})
 public class Activity {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
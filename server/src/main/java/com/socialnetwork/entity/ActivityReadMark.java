@@ -0,0 +1,36 @@
+package com.socialnetwork.entity;
+
+import jakarta.persistence.*;
+
+// Marca de lectura por usuario: todas sus notificaciones con id <= la marca cuentan como leídas.
+// Marcar una categoría entera como leída es actualizar esta fila, no cada notificación.
+@Entity
+@Table(name = "activity_read_marks")
+public class ActivityReadMark {
+    // Mismo id que el usuario (una fila por usuario)
+    @Id
+    private Long userId;
+
+    // Última notificación de tipo MESSAGE leída
+    private Long messagesReadUpTo = 0L;
+
+    // Última notificación de cualquier otro tipo (LIKE, FOLLOW, REPOST...) leída
+    private Long notificationsReadUpTo = 0L;
+
+    public ActivityReadMark() {}
+
+    public ActivityReadMark(Long userId) { this.userId = userId; }
+
+    // Getters and Setters
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public Long getMessagesReadUpTo() { return messagesReadUpTo; }
+    public void setMessagesReadUpTo(Long messagesReadUpTo) { this.messagesReadUpTo = messagesReadUpTo; }
+    public Long getNotificationsReadUpTo() { return notificationsReadUpTo; }
+    public void setNotificationsReadUpTo(Long notificationsReadUpTo) { this.notificationsReadUpTo = notificationsReadUpTo; }
+
+    // Marca que aplica a una notificación según su tipo
+    public long markFor(String type) {
+        return "MESSAGE".equals(type) ? messagesReadUpTo : notificationsReadUpTo;
+    }
+}
@@ -0,0 +1,61 @@
+package com.socialnetwork.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Resumen de una conversación desde el punto de vista de uno de los dos usuarios (bandeja de entrada).
+// Hay dos filas por pareja, una por lado, así la bandeja de un usuario es un único rango del índice
+// (owner_id, last_message_at) y cada lado lleva sus propios no leídos.
+@Entity
+@Table(name = "conversations", indexes = {
+    @Index(name = "idx_conversations_inbox", columnList = "owner_id, last_message_at DESC")
+}, uniqueConstraints = {
+    @UniqueConstraint(name = "uk_conversations_pair", columnNames = {"owner_id", "partner_id"})
+})
+public class Conversation {
+
+    // Longitud máxima de la vista previa del último mensaje
+    public static final int PREVIEW_LENGTH = 140;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "owner_id", nullable = false)
+    private User owner;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "partner_id", nullable = false)
+    private User partner;
+
+    private Long lastMessageId;
+    private LocalDateTime lastMessageAt;
+
+    @Column(length = PREVIEW_LENGTH)
+    private String lastMessagePreview;
+
+    // El último mensaje lo envió el dueño de la fila ("Tú: ...")
+    private boolean lastFromOwner;
+
+    // Mensajes del partner que el dueño aún no ha leído
+    private int unreadCount;
+
+    // Getters y Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public User getOwner() { return owner; }
+    public void setOwner(User owner) { this.owner = owner; }
+    public User getPartner() { return partner; }
+    public void setPartner(User partner) { this.partner = partner; }
+    public Long getLastMessageId() { return lastMessageId; }
+    public void setLastMessageId(Long lastMessageId) { this.lastMessageId = lastMessageId; }
+    public LocalDateTime getLastMessageAt() { return lastMessageAt; }
+    public void setLastMessageAt(LocalDateTime lastMessageAt) { this.lastMessageAt = lastMessageAt; }
+    public String getLastMessagePreview() { return lastMessagePreview; }
+    public void setLastMessagePreview(String lastMessagePreview) { this.lastMessagePreview = lastMessagePreview; }
+    public boolean isLastFromOwner() { return lastFromOwner; }
+    public void setLastFromOwner(boolean lastFromOwner) { this.lastFromOwner = lastFromOwner; }
+    public int getUnreadCount() { return unreadCount; }
+    public void setUnreadCount(int unreadCount) { this.unreadCount = unreadCount; }
+}
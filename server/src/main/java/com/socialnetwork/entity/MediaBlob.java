@@ -0,0 +1,52 @@
+package com.socialnetwork.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Imagen subida, identificada por el hash de su contenido (el nombre del fichero sin extensión).
+// refCount = posts y avatares que la usan; cuando llega a 0 y pasa el margen, se borran sus ficheros.
+@Entity
+@Table(name = "media_blobs", indexes = {
+    // Purga de imágenes sin referencias
+    @Index(name = "idx_media_blobs_orphans", columnList = "ref_count, updated_at")
+})
+public class MediaBlob {
+    // "<hash>" o "avatar_<hash>"
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    // jpg o png (la principal es id.extension y las variantes id_tamaño.extension)
+    @Column(nullable = false, length = 8)
+    private String extension;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    private LocalDateTime createdAt;
+
+    // Última subida o cambio de referencias: la purga respeta un margen desde aquí
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public MediaBlob() {}
+
+    public MediaBlob(String id, String extension, LocalDateTime now) {
+        this.id = id;
+        this.extension = extension;
+        this.createdAt = now;
+        this.updatedAt = now;
+    }
+
+    // Getters y Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getExtension() { return extension; }
+    public void setExtension(String extension) { this.extension = extension; }
+    public int getRefCount() { return refCount; }
+    public void setRefCount(int refCount) { this.refCount = refCount; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+    // Conversación (cada sentido) paginada por id: sender_id = ? AND recipient_id = ? AND id < / > ?
+    @Index(name = "idx_messages_pair", columnList = "sender_id, recipient_id, id")
+})
 public class Message {
 
     @Id
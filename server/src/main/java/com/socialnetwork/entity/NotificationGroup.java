@@ -0,0 +1,98 @@
+package com.socialnetwork.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Notificaciones agrupadas por (destinatario, tipo, post): "ana y 41 personas más indicaron que les gusta tu post".
+// Se mantienen al insertar las notificaciones (ActivityPipeline), así la página de actividad lee una fila
+// por grupo en lugar de todas las notificaciones.
+@Entity
+@Table(name = "notification_groups", indexes = {
+    // Página de actividad paginada por cursor (updated_at, id)
+    @Index(name = "idx_notification_groups_feed", columnList = "recipient_id, updated_at DESC, id DESC"),
+    // Compactación de grupos viejos
+    @Index(name = "idx_notification_groups_updated", columnList = "updated_at")
+}, uniqueConstraints = {
+    // Un grupo por clave (en PostgreSQL los NULL no chocan: los FOLLOW, sin post, solo los crea el hilo de la cola)
+    @UniqueConstraint(name = "uk_notification_groups_key", columnNames = {"recipient_id", "type", "post_id"})
+})
+public class NotificationGroup {
+
+    // Actores de muestra que se guardan (los más recientes)
+    public static final int SAMPLE_SIZE = 3;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "recipient_id", nullable = false)
+    private User recipient;
+
+    @Column(nullable = false)
+    private String type;
+
+    // Null en los grupos sin post (FOLLOW)
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "post_id")
+    private Post post;
+
+    // Notificaciones acumuladas en el grupo
+    private int actorCount;
+
+    // Usernames de los últimos actores, el más reciente primero, separados por comas
+    private String sampleActors;
+
+    // Notificaciones del grupo sin leer
+    private int unreadCount;
+
+    private LocalDateTime updatedAt;
+
+    // Getters y Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public User getRecipient() { return recipient; }
+    public void setRecipient(User recipient) { this.recipient = recipient; }
+    public String getType() { return type; }
+    public void setType(String type) { this.type = type; }
+    public Post getPost() { return post; }
+    public void setPost(Post post) { this.post = post; }
+    public int getActorCount() { return actorCount; }
+    public void setActorCount(int actorCount) { this.actorCount = actorCount; }
+    public String getSampleActors() { return sampleActors; }
+    public void setSampleActors(String sampleActors) { this.sampleActors = sampleActors; }
+    public int getUnreadCount() { return unreadCount; }
+    public void setUnreadCount(int unreadCount) { this.unreadCount = unreadCount; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public void addSampleActors(List<String> newestFirst) {
+        sampleActors = mergeSample(sampleActors, newestFirst);
+    }
+
+    // Pone delante los actores nuevos (sin repetir) y recorta a SAMPLE_SIZE
+    public static String mergeSample(String sampleActors, List<String> newestFirst) {
+        List<String> merged = new ArrayList<>();
+        for (String actor : newestFirst) {
+            if (!merged.contains(actor)) merged.add(actor);
+        }
+        for (String actor : parseSample(sampleActors)) {
+            if (!merged.contains(actor)) merged.add(actor);
+        }
+        return String.join(",", merged.subList(0, Math.min(SAMPLE_SIZE, merged.size())));
+    }
+
+    // Muestra sin los actores dados (una vez cada uno)
+    public static String removeFromSample(String sampleActors, List<String> actors) {
+        List<String> sample = new ArrayList<>(parseSample(sampleActors));
+        actors.forEach(sample::remove);
+        return String.join(",", sample);
+    }
+
+    public static List<String> parseSample(String sampleActors) {
+        return (sampleActors == null || sampleActors.isEmpty()) ? List.of() : Arrays.asList(sampleActors.split(","));
+    }
+}
@@ -1,14 +1,35 @@
 package com.socialnetwork.entity;
 
 import jakarta.persistence.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "posts")
+// Solo se actualizan las columnas modificadas: así guardar un post no pisa los contadores
+// que PostCounterService vuelca con UPDATE directos
+@DynamicUpdate
+// Caché de segundo nivel (región en ehcache.xml)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "posts", indexes = {
+    // Índice compuesto para la paginación por cursor del feed (parent_id IS NULL, createdAt, id)
+    @Index(name = "idx_posts_root_feed", columnList = "parent_id, created_at DESC, id DESC"),
+    // Índice por autor para sembrar timelines y leer autores en modo fan-out-on-read
+    @Index(name = "idx_posts_author_feed", columnList = "user_id, created_at DESC, id DESC"),
+    // Reposts de un post (borrado en cascada) y posts marcados como borrados pendientes de purgar
+    @Index(name = "idx_posts_original", columnList = "original_post_id"),
+    @Index(name = "idx_posts_deleted", columnList = "deleted_at")
+}, uniqueConstraints = {
+    // Un usuario solo puede tener un repost de cada post (NULL en original_post_id no cuenta)
+    @UniqueConstraint(name = "uk_posts_user_original", columnNames = {"user_id", "original_post_id"})
+})
 public class Post {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -29,6 +50,10 @@ public class Post {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", timezone = "UTC")
     private LocalDateTime createdAt;
 
+    // Borrado pedido: el post deja de verse en el acto y PostDeletionService purga su subárbol después
+    @JsonIgnore
+    private LocalDateTime deletedAt;
+
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
     @JsonIgnoreProperties({"posts", "followers", "following", "password", "roles", "bio", "enabled"})
@@ -59,6 +84,21 @@ public class Post {
     @JsonIgnoreProperties({"posts", "followers", "following", "password", "roles", "bio", "enabled"})
     private Set<User> repostedByUsers = new HashSet<>();
 
+    // Un repost no guarda su propia copia de likes/reposts: al leerlo se enlaza con el original
+    // (ver EngagementService) y los contadores y listas se leen de ahí.
+    @Transient
+    @JsonIgnore
+    private Post engagementSource;
+
+    // Likes/reposts aún no volcados a la base de datos (ver PostCounterService)
+    @Transient
+    @JsonIgnore
+    private int pendingLikes;
+
+    @Transient
+    @JsonIgnore
+    private int pendingReposts;
+
     // --- GETTERS Y SETTERS ---
 
     public Long getId() { return id; }
@@ -70,13 +110,19 @@ public class Post {
     public String getImageUrl() { return imageUrl; }
     public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
 
-    public Integer getLikesCount() { return (likesCount == null) ? 0 : likesCount; }
+    public Integer getLikesCount() {
+        if (engagementSource != null) return engagementSource.getLikesCount();
+        return Math.max(0, ((likesCount == null) ? 0 : likesCount) + pendingLikes);
+    }
     public void setLikesCount(Integer likesCount) { this.likesCount = likesCount; }
 
     public Integer getRepliesCount() { return (repliesCount == null) ? 0 : repliesCount; }
     public void setRepliesCount(Integer repliesCount) { this.repliesCount = repliesCount; }
 
-    public Integer getRepostsCount() { return (repostsCount == null) ? 0 : repostsCount; }
+    public Integer getRepostsCount() {
+        if (engagementSource != null) return engagementSource.getRepostsCount();
+        return Math.max(0, ((repostsCount == null) ? 0 : repostsCount) + pendingReposts);
+    }
     public void setRepostsCount(Integer repostsCount) { this.repostsCount = repostsCount; }
 
     public String getRepostFromUserName() { return repostFromUserName; }
@@ -88,16 +134,35 @@ public class Post {
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime dt) { this.createdAt = dt; }
 
+    public LocalDateTime getDeletedAt() { return deletedAt; }
+    public void setDeletedAt(LocalDateTime deletedAt) { this.deletedAt = deletedAt; }
+
+    @JsonIgnore
+    public boolean isDeleted() { return deletedAt != null; }
+
     public User getUser() { return user; }
     public void setUser(User user) { this.user = user; }
 
     public Post getParentPost() { return parentPost; }
     public void setParentPost(Post parent) { this.parentPost = parent; }
 
-    public Set<User> getLikedByUsers() { return likedByUsers; }
+    public Set<User> getLikedByUsers() {
+        return (engagementSource != null) ? engagementSource.getLikedByUsers() : likedByUsers;
+    }
     public void setLikedByUsers(Set<User> users) { this.likedByUsers = users; }
 
     // 👇 Getter y Setter para la nueva lista de reposts
-    public Set<User> getRepostedByUsers() { return repostedByUsers; }
+    public Set<User> getRepostedByUsers() {
+        return (engagementSource != null) ? engagementSource.getRepostedByUsers() : repostedByUsers;
+    }
     public void setRepostedByUsers(Set<User> repostedByUsers) { this.repostedByUsers = repostedByUsers; }
+
+    public Post getEngagementSource() { return engagementSource; }
+    public void setEngagementSource(Post engagementSource) { this.engagementSource = engagementSource; }
+
+    public int getPendingLikes() { return pendingLikes; }
+    public void setPendingLikes(int pendingLikes) { this.pendingLikes = pendingLikes; }
+
+    public int getPendingReposts() { return pendingReposts; }
+    public void setPendingReposts(int pendingReposts) { this.pendingReposts = pendingReposts; }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.socialnetwork.repository;
+
+import com.socialnetwork.entity.ActivityReadMark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ActivityReadMarkRepository extends JpaRepository<ActivityReadMark, Long> {
+}
@@ -3,29 +3,69 @@ package com.socialnetwork.repository;
 import com.socialnetwork.entity.Activity;
 import com.socialnetwork.entity.Post;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ActivityRepository extends JpaRepository<Activity, Long> {
     
-    // 1. Obtener todas las notificaciones de un usuario
-    List<Activity> findByRecipientUsernameOrderByCreatedAtDesc(String username);
+    // 2. Última notificación de un usuario por categoría (mensajes / resto): nueva marca de lectura
+    @Query("SELECT MAX(a.id) FROM Activity a WHERE a.recipient.id = :recipientId AND a.type = 'MESSAGE'")
+    Long findLastMessageId(@Param("recipientId") Long recipientId);
 
-    // 2. Obtener notificaciones específicas no leídas (ej: solo mensajes)
-    List<Activity> findByRecipientUsernameAndTypeAndIsReadFalse(String username, String type);
+    @Query("SELECT MAX(a.id) FROM Activity a WHERE a.recipient.id = :recipientId AND a.type <> 'MESSAGE'")
+    Long findLastNotificationId(@Param("recipientId") Long recipientId);
 
-    // 3. Obtener todas las notificaciones no leídas excepto un tipo específico
-    List<Activity> findByRecipientUsernameAndTypeNotAndIsReadFalse(String username, String type);
+    // 3. Métodos para el sistema de chat: marca como leídos los mensajes de un remitente en un solo UPDATE
+    // (solo los que quedan por encima de la marca de lectura; devuelve cuántos cambió)
+    @Modifying
+    @Query("UPDATE Activity a SET a.isRead = true WHERE a.recipient.id = :recipientId AND a.actor.id = :actorId " +
+           "AND a.type = 'MESSAGE' AND a.isRead = false AND a.id > :readUpTo")
+    int markMessagesRead(@Param("recipientId") Long recipientId, @Param("actorId") Long actorId, @Param("readUpTo") Long readUpTo);
 
-    // 4. Métodos para el sistema de chat (Conteo de mensajes no leídos por remitente)
-    long countByRecipientUsernameAndActorUsernameAndTypeAndIsReadFalse(String recipient, String actor, String type);
+    // 4. No leídas de un usuario agrupadas por (actor, tipo): siembra los contadores de ActivityService.
+    // No leída = isRead a false y por encima de la marca de lectura de su categoría.
+    @Query("SELECT a.actor.username, a.type, COUNT(a) FROM Activity a " +
+           "WHERE a.recipient.id = :recipientId AND a.isRead = false " +
+           "AND ((a.type = 'MESSAGE' AND a.id > :messagesReadUpTo) OR (a.type <> 'MESSAGE' AND a.id > :notificationsReadUpTo)) " +
+           "GROUP BY a.actor.username, a.type")
+    List<Object[]> countUnreadByActorAndType(@Param("recipientId") Long recipientId,
+                                             @Param("messagesReadUpTo") Long messagesReadUpTo,
+                                             @Param("notificationsReadUpTo") Long notificationsReadUpTo);
 
-    List<Activity> findByRecipientUsernameAndTypeAndActorUsernameAndIsReadFalse(String recipient, String type, String actor);
+    // 4.1 Las que deja leídas mover una marca de :after a :upTo, agrupadas igual (quien llama filtra la categoría)
+    @Query("SELECT a.actor.username, a.type, COUNT(a) FROM Activity a " +
+           "WHERE a.recipient.id = :recipientId AND a.isRead = false AND a.id > :after AND a.id <= :upTo " +
+           "GROUP BY a.actor.username, a.type")
+    List<Object[]> countUnreadByActorAndTypeBetween(@Param("recipientId") Long recipientId,
+                                                    @Param("after") Long after, @Param("upTo") Long upTo);
+
+    // 5. Destinatarios de las notificaciones de un post (antes de borrarlo)
+    @Query("SELECT DISTINCT a.recipient.username FROM Activity a WHERE a.post = :post")
+    List<String> findRecipientsByPost(@Param("post") Post post);
+
+    // 5.0 De las notificaciones dadas, las que siguen sin leer (isRead a false y por encima de la marca)
+    @Query("SELECT a.id FROM Activity a LEFT JOIN ActivityReadMark m ON m.userId = a.recipient.id " +
+           "WHERE a.id IN :ids AND a.isRead = false AND a.type <> 'MESSAGE' " +
+           "AND a.id > COALESCE(m.notificationsReadUpTo, 0)")
+    List<Long> findUnreadIds(@Param("ids") Collection<Long> ids);
+
+    // 5.1 Igual para varios posts (purga de un subárbol)
+    @Query("SELECT DISTINCT a.recipient.username FROM Activity a WHERE a.post.id IN :postIds")
+    List<String> findRecipientsByPostIds(@Param("postIds") Collection<Long> postIds);
 
     // --- MÉTODO CLAVE PARA ELIMINAR POSTS ---
     // Elimina todas las notificaciones (likes, reposts, shares) asociadas a un post antes de borrarlo
     @Transactional
     void deleteByPost(Post post);
+
+    // Igual, en una sola sentencia para varios posts
+    @Modifying
+    @Query("DELETE FROM Activity a WHERE a.post.id IN :postIds")
+    int deleteByPostIds(@Param("postIds") Collection<Long> postIds);
 }
\ No newline at end of file
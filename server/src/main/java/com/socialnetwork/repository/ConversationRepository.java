@@ -0,0 +1,59 @@
+package com.socialnetwork.repository;
+
+import com.socialnetwork.dto.InboxEntry;
+import com.socialnetwork.entity.Conversation;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ConversationRepository extends JpaRepository<Conversation, Long> {
+
+    // 1. BANDEJA: conversaciones de un usuario por recencia (índice idx_conversations_inbox)
+    @Query("SELECT new com.socialnetwork.dto.InboxEntry(p.username, p.displayName, p.avatarUrl, " +
+           "c.lastMessageId, c.lastMessagePreview, c.lastFromOwner, c.lastMessageAt, c.unreadCount) " +
+           "FROM Conversation c JOIN c.partner p WHERE c.owner.id = :ownerId ORDER BY c.lastMessageAt DESC")
+    List<InboxEntry> findInbox(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    // 2. MENSAJE NUEVO: inserta o actualiza el lado (owner, partner) en una sola sentencia. Dos primeros
+    // mensajes a la vez no chocan con uk_conversations_pair: el segundo cae en la rama DO UPDATE.
+    // Un mensaje más antiguo que el último registrado (llegadas desordenadas) no pisa la vista previa,
+    // pero sus no leídos sí se suman. Solo toca "conversations" (no invalida el resto de la caché L2).
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "conversations"))
+    @Query(value = "INSERT INTO conversations (owner_id, partner_id, last_message_id, last_message_at, " +
+                   "last_message_preview, last_from_owner, unread_count) " +
+                   "VALUES (:ownerId, :partnerId, :messageId, :sentAt, :preview, :fromOwner, :unread) " +
+                   "ON CONFLICT (owner_id, partner_id) DO UPDATE SET " +
+                   "unread_count = conversations.unread_count + EXCLUDED.unread_count, " +
+                   "last_message_id = GREATEST(conversations.last_message_id, EXCLUDED.last_message_id), " +
+                   "last_message_at = CASE WHEN conversations.last_message_id < EXCLUDED.last_message_id " +
+                   "  THEN EXCLUDED.last_message_at ELSE conversations.last_message_at END, " +
+                   "last_message_preview = CASE WHEN conversations.last_message_id < EXCLUDED.last_message_id " +
+                   "  THEN EXCLUDED.last_message_preview ELSE conversations.last_message_preview END, " +
+                   "last_from_owner = CASE WHEN conversations.last_message_id < EXCLUDED.last_message_id " +
+                   "  THEN EXCLUDED.last_from_owner ELSE conversations.last_from_owner END",
+           nativeQuery = true)
+    int recordMessage(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId,
+                      @Param("messageId") Long messageId, @Param("sentAt") LocalDateTime sentAt,
+                      @Param("preview") String preview, @Param("fromOwner") boolean fromOwner,
+                      @Param("unread") int unread);
+
+    // 3. LEÍDOS: una conversación o todas las del usuario
+    @Modifying
+    @Query("UPDATE Conversation c SET c.unreadCount = 0 WHERE c.owner.id = :ownerId AND c.partner.id = :partnerId AND c.unreadCount > 0")
+    int markRead(@Param("ownerId") Long ownerId, @Param("partnerId") Long partnerId);
+
+    @Modifying
+    @Query("UPDATE Conversation c SET c.unreadCount = 0 WHERE c.owner.id = :ownerId AND c.unreadCount > 0")
+    int markAllRead(@Param("ownerId") Long ownerId);
+}
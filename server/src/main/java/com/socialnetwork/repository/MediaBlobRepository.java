@@ -0,0 +1,35 @@
+package com.socialnetwork.repository;
+
+import com.socialnetwork.entity.MediaBlob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MediaBlobRepository extends JpaRepository<MediaBlob, String> {
+
+    // 1. REFERENCIAS: +1 al usarla en un post/avatar, -1 al dejar de usarla
+    @Modifying
+    @Query("UPDATE MediaBlob b SET b.refCount = b.refCount + :delta, b.updatedAt = :now WHERE b.id = :id")
+    int addReferences(@Param("id") String id, @Param("delta") int delta, @Param("now") LocalDateTime now);
+
+    // 2. SUBIDA REPETIDA: se reutiliza y se renueva el margen antes de la purga
+    @Modifying
+    @Query("UPDATE MediaBlob b SET b.updatedAt = :now WHERE b.id = :id")
+    int touch(@Param("id") String id, @Param("now") LocalDateTime now);
+
+    // 3. PURGA: sin referencias y sin cambios desde antes de la fecha dada
+    @Query("SELECT b FROM MediaBlob b WHERE b.refCount <= 0 AND b.updatedAt < :before ORDER BY b.updatedAt")
+    List<MediaBlob> findOrphans(@Param("before") LocalDateTime before, Pageable pageable);
+
+    // Vuelve a comprobar la condición: una subida o referencia nueva entre medias la salva
+    @Modifying
+    @Query("DELETE FROM MediaBlob b WHERE b.id = :id AND b.refCount <= 0 AND b.updatedAt < :before")
+    int deleteIfOrphan(@Param("id") String id, @Param("before") LocalDateTime before);
+}
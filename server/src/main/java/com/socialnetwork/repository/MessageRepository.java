@@ -3,6 +3,7 @@ package com.socialnetwork.repository;
 import com.socialnetwork.entity.Message;
 import com.socialnetwork.entity.Post;
 import com.socialnetwork.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -12,17 +13,27 @@ import java.util.List;
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
     
-    // Encuentra la conversación entre dos usuarios específicos
-    @Query("SELECT m FROM Message m WHERE (m.sender = :user1 AND m.recipient = :user2) " +
-           "OR (m.sender = :user2 AND m.recipient = :user1) ORDER BY m.createdAt ASC")
-    List<Message> findConversation(@Param("user1") User user1, @Param("user2") User user2);
+    // Conversación entre dos usuarios, paginada por id de mensaje (índice idx_messages_pair)
+    // Últimos mensajes (más nuevo primero)
+    @Query("SELECT m FROM Message m WHERE ((m.sender = :user1 AND m.recipient = :user2) " +
+           "OR (m.sender = :user2 AND m.recipient = :user1)) ORDER BY m.id DESC")
+    List<Message> findConversationLatest(@Param("user1") User user1, @Param("user2") User user2, Pageable pageable);
 
-    // Encuentra a todos los contactos (socios de chat) de un usuario
-    @Query("SELECT DISTINCT u FROM User u WHERE u.username != :username AND u IN (" +
-           "SELECT m.sender FROM Message m WHERE m.recipient.username = :username " +
-           "UNION " +
-           "SELECT m.recipient FROM Message m WHERE m.sender.username = :username)")
-    List<User> findChatPartners(@Param("username") String username);
+    // Anteriores a un mensaje (scroll hacia atrás, más nuevo primero)
+    @Query("SELECT m FROM Message m WHERE ((m.sender = :user1 AND m.recipient = :user2) " +
+           "OR (m.sender = :user2 AND m.recipient = :user1)) AND m.id < :before ORDER BY m.id DESC")
+    List<Message> findConversationBefore(@Param("user1") User user1, @Param("user2") User user2,
+                                         @Param("before") Long before, Pageable pageable);
+
+    // Posteriores a un mensaje (solo lo nuevo, más antiguo primero)
+    @Query("SELECT m FROM Message m WHERE ((m.sender = :user1 AND m.recipient = :user2) " +
+           "OR (m.sender = :user2 AND m.recipient = :user1)) AND m.id > :after ORDER BY m.id ASC")
+    List<Message> findConversationAfter(@Param("user1") User user1, @Param("user2") User user2,
+                                        @Param("after") Long after, Pageable pageable);
+
+    // Último mensaje de cada sentido de cada conversación (inicialización de la tabla conversations)
+    @Query("SELECT MAX(m.id) FROM Message m GROUP BY m.sender.id, m.recipient.id")
+    List<Long> findLastMessageIdPerDirection();
 
     // --- MÉTODO NUEVO PARA INTEGRIDAD REFERENCIAL ---
     // Permite encontrar mensajes que contienen un post compartido para limpiar la referencia antes de borrar el post
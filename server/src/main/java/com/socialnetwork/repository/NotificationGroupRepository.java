@@ -0,0 +1,86 @@
+package com.socialnetwork.repository;
+
+import com.socialnetwork.dto.NotificationGroupDTO;
+import com.socialnetwork.entity.NotificationGroup;
+import com.socialnetwork.entity.Post;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface NotificationGroupRepository extends JpaRepository<NotificationGroup, Long> {
+
+    // 1. PÁGINA DE ACTIVIDAD: grupos de un usuario por recencia, paginados por cursor (updatedAt, id).
+    // type null = todos los tipos menos MESSAGE (los mensajes van por el chat)
+    @Query("SELECT new com.socialnetwork.dto.NotificationGroupDTO(g.id, g.type, g.actorCount, g.sampleActors, " +
+           "p.id, p.content, p.imageUrl, g.updatedAt, g.unreadCount) " +
+           "FROM NotificationGroup g LEFT JOIN g.post p " +
+           "WHERE g.recipient.id = :recipientId AND (:type IS NULL OR g.type = :type) " +
+           "ORDER BY g.updatedAt DESC, g.id DESC")
+    List<NotificationGroupDTO> findPage(@Param("recipientId") Long recipientId, @Param("type") String type, Pageable pageable);
+
+    @Query("SELECT new com.socialnetwork.dto.NotificationGroupDTO(g.id, g.type, g.actorCount, g.sampleActors, " +
+           "p.id, p.content, p.imageUrl, g.updatedAt, g.unreadCount) " +
+           "FROM NotificationGroup g LEFT JOIN g.post p " +
+           "WHERE g.recipient.id = :recipientId AND (:type IS NULL OR g.type = :type) " +
+           "AND (g.updatedAt < :updatedAt OR (g.updatedAt = :updatedAt AND g.id < :id)) " +
+           "ORDER BY g.updatedAt DESC, g.id DESC")
+    List<NotificationGroupDTO> findPageBefore(@Param("recipientId") Long recipientId, @Param("type") String type,
+                                              @Param("updatedAt") LocalDateTime updatedAt, @Param("id") Long id,
+                                              Pageable pageable);
+
+    // 2. GRUPO DE UNA CLAVE (destinatario, tipo, post); post null para FOLLOW
+    @Query("SELECT g FROM NotificationGroup g LEFT JOIN g.post p WHERE g.recipient.id = :recipientId AND g.type = :type " +
+           "AND ((:postId IS NULL AND p IS NULL) OR p.id = :postId)")
+    Optional<NotificationGroup> findByKey(@Param("recipientId") Long recipientId, @Param("type") String type,
+                                          @Param("postId") Long postId);
+
+    // 2.1 Suma al grupo con UPDATE relativo: markAllRead y el borrado por post escriben la misma fila desde
+    // otros hilos, y guardar la entidad entera pisaría lo que hicieron. La muestra de actores solo la escribe la cola
+    @Modifying
+    @Query("UPDATE NotificationGroup g SET g.actorCount = g.actorCount + :count, g.unreadCount = g.unreadCount + :unread, " +
+           "g.sampleActors = :sample, " +
+           "g.updatedAt = CASE WHEN g.updatedAt IS NULL OR g.updatedAt < :latest THEN :latest ELSE g.updatedAt END " +
+           "WHERE g.id = :id")
+    int addToGroup(@Param("id") Long id, @Param("count") int count, @Param("unread") int unread,
+                   @Param("sample") String sample, @Param("latest") LocalDateTime latest);
+
+    // 2.2 Descuento relativo de notificaciones borradas (unread solo las que seguían sin leer)
+    @Modifying
+    @Query("UPDATE NotificationGroup g SET g.actorCount = g.actorCount - :count, " +
+           "g.unreadCount = CASE WHEN g.unreadCount > :unread THEN g.unreadCount - :unread ELSE 0 END, " +
+           "g.sampleActors = :sample WHERE g.id = :id")
+    int removeFromGroup(@Param("id") Long id, @Param("count") int count, @Param("unread") int unread,
+                        @Param("sample") String sample);
+
+    // 2.3 Grupo que se queda sin notificaciones
+    @Modifying
+    @Query("DELETE FROM NotificationGroup g WHERE g.id = :id AND g.actorCount <= :count")
+    int deleteIfEmptied(@Param("id") Long id, @Param("count") int count);
+
+    // 3. LEÍDOS: todos los grupos del usuario (sus notificaciones que no son mensajes)
+    @Modifying
+    @Query("UPDATE NotificationGroup g SET g.unreadCount = 0 WHERE g.recipient.id = :recipientId AND g.unreadCount > 0")
+    int markAllRead(@Param("recipientId") Long recipientId);
+
+    // 4. COMPACTACIÓN: grupos ya leídos sin novedades desde antes de la fecha dada
+    @Query("SELECT g.id FROM NotificationGroup g WHERE g.updatedAt < :before AND g.unreadCount = 0 ORDER BY g.updatedAt")
+    List<Long> findIdleIds(@Param("before") LocalDateTime before, Pageable pageable);
+
+    // 5. Los grupos de un post se borran con él
+    @Modifying
+    @Query("DELETE FROM NotificationGroup g WHERE g.post = :post")
+    int deleteByPost(@Param("post") Post post);
+
+    @Modifying
+    @Query("DELETE FROM NotificationGroup g WHERE g.post.id IN :postIds")
+    int deleteByPostIds(@Param("postIds") Collection<Long> postIds);
+}
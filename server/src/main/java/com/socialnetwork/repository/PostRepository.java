@@ -1,39 +1,219 @@
 package com.socialnetwork.repository;
 
+import com.socialnetwork.dto.PostDTO;
+import com.socialnetwork.dto.TimelineEntry;
 import com.socialnetwork.entity.Post;
-import com.socialnetwork.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
 
-    // 1. FEED PRINCIPAL (PARA TI): Obtiene todos los posts raíz (que no son respuestas)
-    List<Post> findAllByParentPostIsNullOrderByCreatedAtDesc();
+    // 1. FEED PRINCIPAL (PARA TI): posts raíz (que no son respuestas), paginados por cursor (createdAt, id).
+    // Primera página y páginas siguientes; usa el índice idx_posts_root_feed, así que el coste no depende del total de posts.
+    // Solo devuelven (id, autor, fecha): los posts se cargan después con findViewsByIds.
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.parentPost IS NULL AND p.deletedAt IS NULL ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findRootEntries(Pageable pageable);
 
-    // 2. PERFIL - THREADS: Posts propios que son el inicio de un hilo
-    List<Post> findByUserUsernameAndParentPostIsNullOrderByCreatedAtDesc(String username);
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.parentPost IS NULL AND p.deletedAt IS NULL " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findRootEntriesBefore(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+    // 2. PERFIL - THREADS: Posts propios que son el inicio de un hilo, paginados por cursor como el feed
+    // (índice idx_posts_author_feed)
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.user.username = :username AND p.parentPost IS NULL AND p.deletedAt IS NULL " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findThreadEntriesByUsername(@Param("username") String username, Pageable pageable);
+
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.user.username = :username AND p.parentPost IS NULL AND p.deletedAt IS NULL " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findThreadEntriesByUsernameBefore(@Param("username") String username,
+                                                          @Param("createdAt") LocalDateTime createdAt,
+                                                          @Param("id") Long id, Pageable pageable);
 
     // 3. PERFIL - REPLIES: Posts propios que son respuestas a otros posts
-    List<Post> findByUserUsernameAndParentPostIsNotNullOrderByCreatedAtDesc(String username);
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.user.username = :username AND p.parentPost IS NOT NULL AND p.deletedAt IS NULL " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findReplyEntriesByUsername(@Param("username") String username, Pageable pageable);
+
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.user.username = :username AND p.parentPost IS NOT NULL AND p.deletedAt IS NULL " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findReplyEntriesByUsernameBefore(@Param("username") String username,
+                                                         @Param("createdAt") LocalDateTime createdAt,
+                                                         @Param("id") Long id, Pageable pageable);
 
     // 4. PERFIL - REPOSTS: Listado de posts que el usuario ha compartido
-    List<Post> findByUserUsernameAndOriginalPostIdIsNotNullOrderByCreatedAtDesc(String username);
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.user.username = :username AND p.originalPostId IS NOT NULL AND p.deletedAt IS NULL " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findRepostEntriesByUsername(@Param("username") String username, Pageable pageable);
+
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.user.username = :username AND p.originalPostId IS NOT NULL AND p.deletedAt IS NULL " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findRepostEntriesByUsernameBefore(@Param("username") String username,
+                                                          @Param("createdAt") LocalDateTime createdAt,
+                                                          @Param("id") Long id, Pageable pageable);
+
+    // 5. FEED PERSONALIZADO (SIGUIENDO): entradas (id, autor, fecha) de posts raíz de los autores dados.
+    // Sirve para sembrar el timeline materializado y para leer a los autores con muchos seguidores.
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.user.id IN :authorIds AND p.parentPost IS NULL AND p.deletedAt IS NULL ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findTimelineEntries(@Param("authorIds") Collection<Long> authorIds, Pageable pageable);
+
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.user.id IN :authorIds AND p.parentPost IS NULL AND p.deletedAt IS NULL " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findTimelineEntriesBefore(@Param("authorIds") Collection<Long> authorIds,
+                                                  @Param("createdAt") LocalDateTime createdAt,
+                                                  @Param("id") Long id, Pageable pageable);
+
+    // 6. HILOS: respuestas directas de un post, más recientes primero y paginadas por cursor
+    // (índice idx_posts_root_feed: parent_id, created_at, id)
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.parentPost.id = :parentId AND p.deletedAt IS NULL ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findReplyEntries(@Param("parentId") Long parentId, Pageable pageable);
+
+    @Query("SELECT new com.socialnetwork.dto.TimelineEntry(p.id, p.user.id, p.createdAt) FROM Post p " +
+           "WHERE p.parentPost.id = :parentId AND p.deletedAt IS NULL " +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id)) " +
+           "ORDER BY p.createdAt DESC, p.id DESC")
+    List<TimelineEntry> findReplyEntriesBefore(@Param("parentId") Long parentId,
+                                               @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") Long id, Pageable pageable);
+
+    // 6.1 HILO COMPLETO: filas (id, parent_id, profundidad, fecha) del árbol de respuestas en una sola consulta recursiva.
+    // El primer nivel son las respuestas directas posteriores al cursor (más antiguas primero, como mucho :firstLevel);
+    // debajo, todas hasta :maxDepth. La consulta recursiva se evalúa por niveles y, sin ORDER BY, el LIMIT la corta
+    // en cuanto tiene :maxRows filas: si se llega al límite, solo el último nivel puede estar incompleto.
+    // Cada nivel usa el índice idx_posts_root_feed (parent_id, ...). Un post borrado desaparece con su subárbol.
+    @Query(value = "WITH RECURSIVE thread(id, parent_id, depth, created_at) AS (" +
+                   "  SELECT f.id, f.parent_id, 1, f.created_at FROM (" +
+                   "    SELECT r.id, r.parent_id, r.created_at FROM posts r WHERE r.parent_id = :rootId AND r.deleted_at IS NULL " +
+                   "    AND (r.created_at > :createdAt OR (r.created_at = :createdAt AND r.id > :id)) " +
+                   "    ORDER BY r.created_at, r.id LIMIT :firstLevel) f " +
+                   "  UNION ALL " +
+                   "  SELECT c.id, c.parent_id, t.depth + 1, c.created_at FROM posts c JOIN thread t ON c.parent_id = t.id " +
+                   "  WHERE t.depth < :maxDepth AND c.deleted_at IS NULL" +
+                   ") SELECT id, parent_id, depth, created_at FROM thread LIMIT :maxRows", nativeQuery = true)
+    List<Object[]> findThreadRows(@Param("rootId") Long rootId,
+                                  @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id,
+                                  @Param("firstLevel") int firstLevel, @Param("maxDepth") int maxDepth,
+                                  @Param("maxRows") int maxRows);
+
+    // Respuestas directas posteriores al cursor (las que quedan de una rama al paginarla)
+    @Query("SELECT COUNT(p) FROM Post p WHERE p.parentPost.id = :parentId AND p.deletedAt IS NULL " +
+           "AND (p.createdAt > :createdAt OR (p.createdAt = :createdAt AND p.id > :id))")
+    long countRepliesAfter(@Param("parentId") Long parentId, @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id);
+
+    // Reconstrucción del índice de búsqueda: (id, contenido, fecha) de los posts que no son reposts, por tramos de id
+    @Query("SELECT p.id, p.content, p.createdAt FROM Post p WHERE p.originalPostId IS NULL AND p.deletedAt IS NULL " +
+           "AND p.id > :afterId ORDER BY p.id")
+    List<Object[]> findSearchRows(@Param("afterId") Long afterId, Pageable pageable);
 
-    // 5. FEED PERSONALIZADO (SIGUIENDO): 
-    // Obtiene posts de la lista de usuarios seguidos, EXCLUYENDO respuestas (solo posts raíz)
-    List<Post> findByUserInAndParentPostIsNullOrderByCreatedAtDesc(List<User> users);
+    // 7. VISTAS LIGERAS (PostDTO) de un conjunto de posts en una sola consulta:
+    // autor resumido y contadores del original si es un repost.
+    // El orden lo pone quien llama (PostService.getViews). Los borrados (y los reposts de un borrado) no se ven.
+    @Query("SELECT new com.socialnetwork.dto.PostDTO(p.id, p.content, p.imageUrl, p.createdAt, " +
+           "COALESCE(o.likesCount, p.likesCount), p.repliesCount, COALESCE(o.repostsCount, p.repostsCount), " +
+           "p.repostFromUserName, p.originalPostId, parent.id, u.username, u.displayName, u.avatarUrl) " +
+           "FROM Post p JOIN p.user u LEFT JOIN p.parentPost parent LEFT JOIN Post o ON o.id = p.originalPostId " +
+           "WHERE p.id IN :ids AND p.deletedAt IS NULL AND o.deletedAt IS NULL")
+    List<PostDTO> findViewsByIds(@Param("ids") Collection<Long> ids);
 
-    // 6. HILOS: Obtener todas las respuestas directas de un post por su ID
-    List<Post> findByParentPostIdOrderByCreatedAtDesc(Long parentId);
+    // 8. ESTADO DEL VIEWER: qué posts de la página le gustan ('L') o reposteó ('R'), en una sola consulta
+    @Query(value = "SELECT pl.post_id, 'L' FROM post_likes pl JOIN users u ON u.id = pl.user_id " +
+                   "WHERE u.username = :viewer AND pl.post_id IN (:postIds) " +
+                   "UNION ALL " +
+                   "SELECT pr.post_id, 'R' FROM post_reposts pr JOIN users u ON u.id = pr.user_id " +
+                   "WHERE u.username = :viewer AND pr.post_id IN (:postIds)", nativeQuery = true)
+    List<Object[]> findViewerEngagement(@Param("viewer") String viewer, @Param("postIds") Collection<Long> postIds);
+
+    // Los posts más recientes (por id) con los que el viewer interactuó, como mucho :limit (para sembrar su filtro de Bloom)
+    @Query(value = "SELECT e.post_id FROM (" +
+                   "SELECT pl.post_id FROM post_likes pl JOIN users u ON u.id = pl.user_id WHERE u.username = :viewer " +
+                   "UNION " +
+                   "SELECT pr.post_id FROM post_reposts pr JOIN users u ON u.id = pr.user_id WHERE u.username = :viewer" +
+                   ") e ORDER BY e.post_id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findRecentEngagedPostIds(@Param("viewer") String viewer, @Param("limit") int limit);
+
+    // 9. LIKE / REPOST: pertenencia por clave (post_id, user_id), sin cargar la colección de usuarios.
+    // Solo tocan su tabla de enlace: no invalidan el resto de la caché L2.
+    @Query(value = "SELECT COUNT(*) > 0 FROM post_likes WHERE post_id = :postId AND user_id = :userId", nativeQuery = true)
+    boolean existsLike(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "post_likes"))
+    @Query(value = "INSERT INTO post_likes (post_id, user_id) VALUES (:postId, :userId)", nativeQuery = true)
+    int insertLike(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "post_likes"))
+    @Query(value = "DELETE FROM post_likes WHERE post_id = :postId AND user_id = :userId", nativeQuery = true)
+    int deleteLike(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Query(value = "SELECT COUNT(*) > 0 FROM post_reposts WHERE post_id = :postId AND user_id = :userId", nativeQuery = true)
+    boolean existsRepost(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "post_reposts"))
+    @Query(value = "INSERT INTO post_reposts (post_id, user_id) VALUES (:postId, :userId)", nativeQuery = true)
+    int insertRepost(@Param("postId") Long postId, @Param("userId") Long userId);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "post_reposts"))
+    @Query(value = "DELETE FROM post_reposts WHERE post_id = :postId AND user_id = :userId", nativeQuery = true)
+    int deleteRepost(@Param("postId") Long postId, @Param("userId") Long userId);
 
     // --- MÉTODOS PARA INTEGRIDAD REFERENCIAL Y UTILIDADES ---
 
+    // Subárbol completo de un post para purgarlo: respuestas a cualquier profundidad y reposts de cualquiera de ellos.
+    // Filas (id, autor, padre, original, imagen, profundidad); un post alcanzable por dos caminos sale más de una vez.
+    @Query(value = "WITH RECURSIVE subtree(id, user_id, parent_id, original_post_id, image_url, depth) AS (" +
+                   "  SELECT p.id, p.user_id, p.parent_id, p.original_post_id, p.image_url, 0 FROM posts p WHERE p.id = :rootId " +
+                   "  UNION ALL " +
+                   "  SELECT c.id, c.user_id, c.parent_id, c.original_post_id, c.image_url, s.depth + 1 " +
+                   "  FROM posts c JOIN subtree s ON c.parent_id = s.id OR c.original_post_id = s.id" +
+                   ") SELECT id, user_id, parent_id, original_post_id, image_url, depth FROM subtree", nativeQuery = true)
+    List<Object[]> findSubtreeRows(@Param("rootId") Long rootId);
+
+    // Raíces de los subárboles marcados como borrados que aún existen (purgas pendientes o que no llegaron
+    // a terminar): posts marcados cuyo padre y original no lo están. El resto cae en la purga de su raíz.
+    @Query("SELECT p.id FROM Post p LEFT JOIN p.parentPost parent LEFT JOIN Post o ON o.id = p.originalPostId " +
+           "WHERE p.deletedAt IS NOT NULL AND (parent.id IS NULL OR parent.deletedAt IS NULL) " +
+           "AND (o.id IS NULL OR o.deletedAt IS NULL) ORDER BY p.deletedAt")
+    List<Long> findDeletedRootIds();
+
     // A. Encuentra todas las respuestas asociadas a un objeto Post específico
     List<Post> findByParentPost(Post post);
 
     // B. Encuentra todos los reposts que apuntan a un ID de post original
     List<Post> findByOriginalPostId(Long originalPostId);
-}
\ No newline at end of file
+
+    // B.1 El repost de un usuario concreto sobre un original (índice único uk_posts_user_original)
+    Optional<Post> findByUserIdAndOriginalPostId(Long userId, Long originalPostId);
+}
@@ -2,14 +2,50 @@ package com.socialnetwork.repository;
 
 import com.socialnetwork.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.repository.query.Param;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     
+    // Cacheada (región users-by-username): la consulta guarda el id y el usuario sale de la caché de entidades.
+    // Hibernate la invalida en cuanto se escribe en la tabla users.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "users-by-username")
+    })
     Optional<User> findByUsername(String username);
     
-    // Método para el buscador: busca por nombre de usuario o nombre mostrado ignorando mayúsculas
+    // Buscador antes de que el índice en memoria (UserSearchService) esté construido
     List<User> findByUsernameContainingIgnoreCaseOrDisplayNameContainingIgnoreCase(
             String username, String displayName);
+
+    // Construcción del índice del buscador: (id, username, displayName, seguidores)
+    @Query("SELECT u.id, u.username, u.displayName, SIZE(u.followers) FROM User u")
+    List<Object[]> findSearchRows();
+
+    // Varios usuarios de una vez (actores de muestra de las notificaciones agrupadas)
+    List<User> findByUsernameIn(Collection<String> usernames);
+
+    // --- IDS PARA EL TIMELINE MATERIALIZADO (sin cargar entidades) ---
+
+    // Usuarios que siguen a userId
+    @Query("SELECT f.id FROM User u JOIN u.followers f WHERE u.id = :userId")
+    List<Long> findFollowerIds(@Param("userId") Long userId);
+
+    // Usuarios a los que sigue userId
+    @Query("SELECT f.id FROM User u JOIN u.following f WHERE u.id = :userId")
+    List<Long> findFollowingIds(@Param("userId") Long userId);
+
+    // Seguidos de userId con más de minFollowers seguidores (autores que se leen en modo fan-out-on-read)
+    @Query("SELECT f.id FROM User u JOIN u.following f WHERE u.id = :userId AND SIZE(f.followers) > :minFollowers")
+    List<Long> findFollowingIdsWithMoreFollowersThan(@Param("userId") Long userId, @Param("minFollowers") int minFollowers);
+
+    @Query("SELECT COUNT(f) FROM User u JOIN u.followers f WHERE u.id = :userId")
+    long countFollowers(@Param("userId") Long userId);
 }
\ No newline at end of file
@@ -0,0 +1,331 @@
+package com.socialnetwork.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Cola asíncrona de notificaciones: el like/repost/follow/mensaje solo encola (al confirmar) y un
+ * hilo aparte las inserta en lote, fuera de la transacción del usuario.
+ *
+ * El hilo junta lo que llega durante una ventana corta (linger) o hasta llenar un lote y lo compacta:
+ * un like seguido de un unlike del mismo usuario sobre el mismo post se anulan y no llegan a la tabla.
+ * Si el like ya se había insertado, el unlike borra esa fila (y la descuenta de su grupo).
+ * La cola es acotada; si se llena, las notificaciones nuevas se descartan (y se cuentan) en lugar de
+ * frenar las peticiones.
+ *
+ * Este hilo es el único que escribe en notification_groups; quien necesite borrar fuera de la cola
+ * (la compactación, ActivityRetentionService) lo hace con el mismo cerrojo a través de exclusive/delete.
+ */
+@Service
+public class ActivityPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityPipeline.class);
+
+    // Solo se inserta si el post sigue existiendo (pudo borrarse mientras la notificación esperaba en la cola)
+    private static final String INSERT_SQL =
+            "INSERT INTO activities (type, actor_id, recipient_id, post_id, created_at, is_read) " +
+            "SELECT ?, ?, ?, ?, ?, false WHERE CAST(? AS BIGINT) IS NULL OR EXISTS (SELECT 1 FROM posts p WHERE p.id = ?)";
+
+    // Deshacer algo ya insertado: se borra la fila más reciente con la misma clave
+    private static final String TARGET_SQL =
+            "SELECT MAX(a.id) FROM activities a WHERE a.type = ? AND a.actor_id = ? " +
+            "AND a.recipient_id = ? AND (a.post_id = ? OR (CAST(? AS BIGINT) IS NULL AND a.post_id IS NULL))";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private NotificationGroupService notificationGroupService;
+
+    @Value("${socialnetwork.activities.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${socialnetwork.activities.batch-size:500}")
+    private int batchSize;
+
+    // Ventana para juntar un lote (y para anular like/unlike seguidos)
+    @Value("${socialnetwork.activities.linger-ms:500}")
+    private long lingerMs;
+
+    /**
+     * Notificación pendiente. Con cancel = true anula una pendiente con la misma clave (unlike, unfollow...).
+     */
+    public record PendingActivity(String type, Long actorId, String actorUsername, Long recipientId,
+                                  String recipientUsername, Long postId, LocalDateTime createdAt, boolean cancel) {
+
+        // Like/repost/follow se pueden deshacer: se identifican por (tipo, actor, post o destinatario)
+        Object dedupKey() {
+            return switch (type) {
+                case "LIKE", "REPOST" -> List.of(type, actorId, postId);
+                case "FOLLOW" -> List.of(type, actorId, recipientId);
+                default -> null;
+            };
+        }
+    }
+
+    private BlockingQueue<PendingActivity> queue;
+    private final List<Consumer<List<PendingActivity>>> listeners = new ArrayList<>();
+    private final List<Consumer<List<PendingActivity>>> removalListeners = new ArrayList<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private Thread worker;
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder inserted = new LongAdder();
+    private final LongAdder removed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private volatile int lastBatchSize;
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        worker = new Thread(this::run, "activity-pipeline");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    // Inicialización de las notificaciones agrupadas, con el cerrojo: el hilo ya puede estar creando grupos
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillGroups() {
+        exclusive(() -> {
+            notificationGroupService.backfill();
+            return null;
+        });
+    }
+
+    // Se llama con cada lote ya insertado (contadores de no leídas, canal en tiempo real)
+    public void onInserted(Consumer<List<PendingActivity>> listener) {
+        listeners.add(listener);
+    }
+
+    // Se llama con las notificaciones ya insertadas que se han borrado (unlike tardío, compactación)
+    public void onRemoved(Consumer<List<PendingActivity>> listener) {
+        removalListeners.add(listener);
+    }
+
+    // --- ENCOLAR (desde la petición) ---
+
+    public void enqueue(PendingActivity activity) {
+        TransactionHooks.afterCommit(() -> {
+            if (queue.offer(activity)) {
+                enqueued.increment();
+            } else {
+                dropped.increment();
+                log.warn("Cola de notificaciones llena ({}), se descarta {} de {}", queueCapacity, activity.type(), activity.actorUsername());
+            }
+        });
+    }
+
+    // --- HILO DE INSERCIÓN ---
+
+    private void run() {
+        List<PendingActivity> drained = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingActivity first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                drained.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (drained.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    PendingActivity next = (wait > 0) ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    drained.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Apagado: se vacía lo que quede sin esperar más
+                queue.drainTo(drained, batchSize - drained.size());
+            }
+            if (!drained.isEmpty()) {
+                flush(drained);
+                drained.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingActivity> drained) {
+        List<PendingActivity> batch = coalesce(drained);
+        if (batch.isEmpty()) return;
+        List<PendingActivity> inserts = batch.stream().filter(a -> !a.cancel()).toList();
+        List<PendingActivity> cancels = batch.stream().filter(PendingActivity::cancel).toList();
+
+        List<List<PendingActivity>> applied;
+        writeLock.lock();
+        try {
+            applied = transactionTemplate.execute(status -> {
+                List<PendingActivity> insertedRows = applied(inserts, jdbcTemplate.batchUpdate(INSERT_SQL, inserts, batchSize, (ps, a) -> {
+                    ps.setString(1, a.type());
+                    ps.setLong(2, a.actorId());
+                    ps.setLong(3, a.recipientId());
+                    ps.setObject(4, a.postId(), Types.BIGINT);
+                    ps.setTimestamp(5, Timestamp.valueOf(a.createdAt()));
+                    ps.setObject(6, a.postId(), Types.BIGINT);
+                    ps.setObject(7, a.postId(), Types.BIGINT);
+                }));
+                // Se buscan antes las filas que se deshacen: el grupo descuenta como no leídas solo las que lo eran
+                List<PendingActivity> removedRows = new ArrayList<>();
+                List<Long> removedIds = new ArrayList<>();
+                for (PendingActivity a : cancels) {
+                    Long id = jdbcTemplate.query(TARGET_SQL, ps -> {
+                        ps.setString(1, a.type());
+                        ps.setLong(2, a.actorId());
+                        ps.setLong(3, a.recipientId());
+                        ps.setObject(4, a.postId(), Types.BIGINT);
+                        ps.setObject(5, a.postId(), Types.BIGINT);
+                    }, rs -> rs.next() ? rs.getObject(1, Long.class) : null);
+                    if (id == null || removedIds.contains(id)) continue;
+                    removedRows.add(a);
+                    removedIds.add(id);
+                }
+                // Los grupos de la página de actividad se actualizan en la misma transacción
+                notificationGroupService.apply(insertedRows);
+                notificationGroupService.retract(removedRows, removedIds);
+                jdbcTemplate.batchUpdate("DELETE FROM activities WHERE id = ?", removedIds, batchSize,
+                        (ps, id) -> ps.setLong(1, id));
+                return List.of(insertedRows, removedRows);
+            });
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            log.error("No se pudo insertar un lote de {} notificaciones", batch.size(), e);
+            return;
+        } finally {
+            writeLock.unlock();
+        }
+
+        batches.increment();
+        lastBatchSize = batch.size();
+        inserted.add(applied.get(0).size());
+        notify(listeners, applied.get(0));
+        notifyRemoved(applied.get(1));
+    }
+
+    // Filas del lote que la sentencia llegó a cambiar
+    private static List<PendingActivity> applied(List<PendingActivity> rows, int[][] counts) {
+        List<PendingActivity> changed = new ArrayList<>(rows.size());
+        int i = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                if (count > 0 || count == Statement.SUCCESS_NO_INFO) changed.add(rows.get(i));
+                i++;
+            }
+        }
+        return changed;
+    }
+
+    private void notifyRemoved(List<PendingActivity> rows) {
+        removed.add(rows.size());
+        notify(removalListeners, rows);
+    }
+
+    private static void notify(List<Consumer<List<PendingActivity>>> targets, List<PendingActivity> rows) {
+        if (rows.isEmpty()) return;
+        for (Consumer<List<PendingActivity>> listener : targets) {
+            try {
+                listener.accept(rows);
+            } catch (RuntimeException e) {
+                log.warn("Error notificando un lote de notificaciones", e);
+            }
+        }
+    }
+
+    /**
+     * Orden de llegada, con las parejas acción/deshacer eliminadas y sin duplicados de la misma acción.
+     * Un deshacer sin su acción en el lote se queda: borrará la fila que ya se insertó en otro lote.
+     */
+    private List<PendingActivity> coalesce(List<PendingActivity> drained) {
+        Map<Object, PendingActivity> byKey = new LinkedHashMap<>();
+        for (PendingActivity a : drained) {
+            Object key = a.dedupKey();
+            if (key == null) {
+                byKey.put(new Object(), a);
+                continue;
+            }
+            PendingActivity previous = byKey.get(key);
+            if (previous == null) {
+                byKey.put(key, a);
+            } else if (previous.cancel() != a.cancel()) {
+                // like + unlike (o unlike de lo ya insertado + nuevo like): el resultado es lo que ya había
+                byKey.remove(key);
+                coalesced.add(2);
+            } else {
+                coalesced.increment();
+            }
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+    // --- ACCESO EXCLUSIVO (compactación) ---
+
+    // Ejecuta el trabajo sin que se cruce con un lote de la cola
+    public <T> T exclusive(Supplier<T> work) {
+        writeLock.lock();
+        try {
+            return work.get();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Borra notificaciones ya insertadas por id (rows describe cada una, para descontarla de su grupo
+     * y de los contadores de no leídas). Devuelve cuántas se borraron.
+     */
+    public int delete(List<Long> ids, List<PendingActivity> rows) {
+        if (ids.isEmpty()) return 0;
+        int deleted = exclusive(() -> transactionTemplate.execute(status -> {
+            notificationGroupService.retract(rows, ids);
+            jdbcTemplate.batchUpdate("DELETE FROM activities WHERE id = ?", ids, batchSize,
+                    (ps, id) -> ps.setLong(1, id));
+            return ids.size();
+        }));
+        notifyRemoved(rows);
+        return deleted;
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", (long) queue.size());
+        stats.put("queueCapacity", (long) queueCapacity);
+        stats.put("enqueued", enqueued.sum());
+        stats.put("inserted", inserted.sum());
+        stats.put("removed", removed.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("failed", failed.sum());
+        stats.put("batches", batches.sum());
+        stats.put("lastBatchSize", (long) lastBatchSize);
+        stats.put("maxBatchSize", (long) batchSize);
+        return stats;
+    }
+}
@@ -0,0 +1,180 @@
+package com.socialnetwork.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compactación periódica de la tabla activities, en tandas acotadas (cada una su transacción corta).
+ *
+ * 1. Sustituidas: likes, reposts y follows que ya no existen (se deshicieron antes de este cambio, o
+ *    el unlike se perdió con la cola llena) o repetidos por una acción posterior igual. Se revisan
+ *    de forma incremental por id, dejando un margen para lo que aún puede estar en la cola.
+ * 2. Retención: notificaciones leídas (isRead o por debajo de la marca de lectura) más antiguas que
+ *    el horizonte. Las no leídas se conservan siempre.
+ * 3. Grupos de la página de actividad leídos y sin novedades desde antes del horizonte.
+ */
+@Service
+public class ActivityRetentionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityRetentionService.class);
+
+    // Notificaciones de una acción que se puede deshacer y ya no existe, o repetidas por otra más nueva
+    private static final String SUPERSEDED_SQL =
+            "SELECT a.id, a.type, a.actor_id, actor.username, a.recipient_id, recipient.username, a.post_id, a.created_at " +
+            "FROM activities a JOIN users actor ON actor.id = a.actor_id JOIN users recipient ON recipient.id = a.recipient_id " +
+            "WHERE a.id > ? AND a.id <= ? AND a.type IN ('LIKE', 'REPOST', 'FOLLOW') AND (" +
+            "(a.type = 'LIKE' AND NOT EXISTS (SELECT 1 FROM post_likes l WHERE l.post_id = a.post_id AND l.user_id = a.actor_id)) " +
+            "OR (a.type = 'REPOST' AND NOT EXISTS (SELECT 1 FROM post_reposts r WHERE r.post_id = a.post_id AND r.user_id = a.actor_id)) " +
+            "OR (a.type = 'FOLLOW' AND NOT EXISTS (SELECT 1 FROM user_followers f WHERE f.user_id = a.actor_id AND f.follower_id = a.recipient_id)) " +
+            "OR EXISTS (SELECT 1 FROM activities b WHERE b.type = a.type AND b.actor_id = a.actor_id AND b.recipient_id = a.recipient_id " +
+            "AND (b.post_id = a.post_id OR (b.post_id IS NULL AND a.post_id IS NULL)) AND b.id > a.id)) " +
+            "ORDER BY a.id";
+
+    // Leída = isRead o por debajo de la marca de lectura de su categoría
+    private static final String EXPIRED_SQL =
+            "SELECT a.id FROM activities a LEFT JOIN activity_read_marks m ON m.user_id = a.recipient_id " +
+            "WHERE a.id > ? AND a.id <= ? AND a.created_at < ? AND (a.is_read = true OR a.id <= CASE WHEN a.type = 'MESSAGE' " +
+            "THEN COALESCE(m.messages_read_up_to, 0) ELSE COALESCE(m.notifications_read_up_to, 0) END) " +
+            "ORDER BY a.id LIMIT ?";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private ActivityPipeline activityPipeline;
+    @Autowired private NotificationGroupService notificationGroupService;
+
+    // Las leídas más antiguas que esto se borran (0 = no se borran)
+    @Value("${socialnetwork.activities.retention.days:90}")
+    private int retentionDays;
+
+    @Value("${socialnetwork.activities.retention.batch-size:1000}")
+    private int batchSize;
+
+    // Tandas por pasada y fase como máximo: lo que quede se sigue en la siguiente ejecución
+    @Value("${socialnetwork.activities.retention.max-batches:50}")
+    private int maxBatches;
+
+    // Las más recientes no se revisan como sustituidas: su unlike aún puede estar en la cola
+    @Value("${socialnetwork.activities.retention.grace-minutes:10}")
+    private long graceMinutes;
+
+    // Última notificación ya revisada como sustituida (al reiniciar se revisa todo una vez)
+    private volatile long supersededCheckedUpTo;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder supersededDeleted = new LongAdder();
+    private final LongAdder expiredDeleted = new LongAdder();
+    private final LongAdder groupsDeleted = new LongAdder();
+    private volatile long lastRunMillis;
+    private volatile long lastRunReclaimed;
+
+    @Scheduled(initialDelayString = "${socialnetwork.activities.retention.initial-delay-ms:60000}",
+               fixedDelayString = "${socialnetwork.activities.retention.interval-ms:3600000}")
+    public synchronized void compact() {
+        long start = System.currentTimeMillis();
+        long reclaimed = 0;
+        try {
+            reclaimed += compactSuperseded();
+            if (retentionDays > 0) {
+                LocalDateTime horizon = LocalDateTime.now().minusDays(retentionDays);
+                reclaimed += deleteExpired(horizon);
+                reclaimed += deleteIdleGroups(horizon);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error compactando notificaciones (se sigue en la siguiente pasada)", e);
+        }
+        runs.increment();
+        lastRunMillis = System.currentTimeMillis() - start;
+        lastRunReclaimed = reclaimed;
+        if (reclaimed > 0) log.info("Compactación de notificaciones: {} filas liberadas en {} ms", reclaimed, lastRunMillis);
+    }
+
+    // --- FASES ---
+
+    private long compactSuperseded() {
+        Timestamp settled = Timestamp.valueOf(LocalDateTime.now().minusMinutes(graceMinutes));
+        long deleted = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            // Siguiente tramo de ids ya asentados (se para en la primera que aún está dentro del margen)
+            long from = supersededCheckedUpTo;
+            List<Long> range = jdbcTemplate.query("SELECT id, created_at FROM activities WHERE id > ? ORDER BY id LIMIT ?",
+                    (rs, n) -> rs.getTimestamp(2).before(settled) ? rs.getLong(1) : null, from, batchSize);
+            int settledRows = range.indexOf(null) < 0 ? range.size() : range.indexOf(null);
+            if (settledRows == 0) break;
+            long upTo = range.get(settledRows - 1);
+
+            List<Long> ids = new ArrayList<>();
+            List<ActivityPipeline.PendingActivity> rows = new ArrayList<>();
+            jdbcTemplate.query(SUPERSEDED_SQL, rs -> {
+                ids.add(rs.getLong(1));
+                rows.add(new ActivityPipeline.PendingActivity(rs.getString(2), rs.getLong(3), rs.getString(4),
+                        rs.getLong(5), rs.getString(6), rs.getObject(7, Long.class),
+                        rs.getTimestamp(8).toLocalDateTime(), true));
+            }, from, upTo);
+
+            deleted += activityPipeline.delete(ids, rows);
+            supersededCheckedUpTo = upTo;
+            if (settledRows < batchSize) break;
+        }
+        supersededDeleted.add(deleted);
+        return deleted;
+    }
+
+    // Solo leídas: no cambian los contadores de no leídas ni los grupos (que guardan el total histórico)
+    private long deleteExpired(LocalDateTime horizon) {
+        // Tope de la búsqueda por id (las fechas van casi en el orden de los ids)
+        Long maxId = jdbcTemplate.queryForObject(
+                "SELECT MAX(id) FROM activities WHERE created_at < ?", Long.class, Timestamp.valueOf(horizon));
+        if (maxId == null) return 0;
+
+        long deleted = 0;
+        long after = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            List<Long> ids = jdbcTemplate.queryForList(EXPIRED_SQL, Long.class, after, maxId, Timestamp.valueOf(horizon), batchSize);
+            if (ids.isEmpty()) break;
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate("DELETE FROM activities WHERE id = ?", ids, batchSize, (ps, id) -> ps.setLong(1, id)));
+            deleted += ids.size();
+            after = ids.get(ids.size() - 1);
+            if (ids.size() < batchSize) break;
+        }
+        expiredDeleted.add(deleted);
+        return deleted;
+    }
+
+    // Con el cerrojo de la cola: el hilo escritor no puede estar actualizando el grupo que se borra
+    private long deleteIdleGroups(LocalDateTime horizon) {
+        long deleted = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            int batch = activityPipeline.exclusive(() -> transactionTemplate.execute(status ->
+                    notificationGroupService.deleteIdle(horizon, batchSize)));
+            deleted += batch;
+            if (batch < batchSize) break;
+        }
+        groupsDeleted.add(deleted);
+        return deleted;
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("runs", runs.sum());
+        stats.put("supersededDeleted", supersededDeleted.sum());
+        stats.put("expiredDeleted", expiredDeleted.sum());
+        stats.put("groupsDeleted", groupsDeleted.sum());
+        stats.put("lastRunReclaimed", lastRunReclaimed);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("supersededCheckedUpTo", supersededCheckedUpTo);
+        stats.put("retentionDays", (long) retentionDays);
+        return stats;
+    }
+}
@@ -0,0 +1,264 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.dto.ActivityEvent;
+import com.socialnetwork.entity.ActivityReadMark;
+import com.socialnetwork.entity.Post;
+import com.socialnetwork.entity.User;
+import com.socialnetwork.repository.ActivityReadMarkRepository;
+import com.socialnetwork.repository.ActivityRepository;
+import com.socialnetwork.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Notificaciones (Activity) y sus contadores de no leídas.
+ *
+ * Cada destinatario tiene en memoria sus no leídas agrupadas por (actor, tipo), más el total y el total
+ * de mensajes. Se siembran con una consulta agrupada la primera vez que se piden y a partir de ahí se
+ * mantienen al crear y marcar como leídas (al confirmar la transacción), así que el badge y los
+ * contadores por contacto del chat no vuelven a consultar la tabla activities.
+ *
+ * Marcar como leída una categoría entera (mensajes o notificaciones) no toca las filas: sube la marca
+ * de lectura del usuario (ActivityReadMark) hasta la última notificación de esa categoría.
+ *
+ * Las notificaciones se insertan en lote de forma asíncrona (ActivityPipeline); al insertarse se suman
+ * a los contadores y se empujan al destinatario por el canal en tiempo real (EventStreamService).
+ */
+@Service
+public class ActivityService {
+
+    public static final String MESSAGE = "MESSAGE";
+
+    @Autowired private ActivityRepository activityRepository;
+    @Autowired private ActivityReadMarkRepository readMarkRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private EventStreamService eventStreamService;
+    @Autowired private ActivityPipeline activityPipeline;
+    @Autowired private NotificationGroupService notificationGroupService;
+
+    // Destinatarios con contadores en memoria como máximo (LRU)
+    @Value("${socialnetwork.activities.max-cached-recipients:10000}")
+    private int maxCachedRecipients;
+
+    private Map<String, UnreadCounters> counters;
+
+    // Misma idea que en ViewerStateService: si la franja cambia mientras se siembra, no se guarda
+    private final AtomicLongArray versions = new AtomicLongArray(1024);
+
+    @PostConstruct
+    void init() {
+        counters = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UnreadCounters> eldest) {
+                return size() > maxCachedRecipients;
+            }
+        };
+        activityPipeline.onInserted(this::onInserted);
+        activityPipeline.onRemoved(this::onRemoved);
+    }
+
+    // --- ESCRITURA ---
+
+    // Solo encola: la fila la inserta ActivityPipeline en lote, fuera de la transacción de la petición
+    public void record(String type, User actor, User recipient, Post post) {
+        activityPipeline.enqueue(pending(type, actor, recipient, post, false));
+    }
+
+    // Deshace una notificación que aún no se ha insertado (unlike, quitar repost, unfollow)
+    public void cancel(String type, User actor, User recipient, Post post) {
+        activityPipeline.enqueue(pending(type, actor, recipient, post, true));
+    }
+
+    private static ActivityPipeline.PendingActivity pending(String type, User actor, User recipient, Post post, boolean cancel) {
+        return new ActivityPipeline.PendingActivity(type, actor.getId(), actor.getUsername(),
+                recipient.getId(), recipient.getUsername(), post != null ? post.getId() : null,
+                LocalDateTime.now(), cancel);
+    }
+
+    // Lote ya insertado: contadores de no leídas y aviso por el canal en tiempo real
+    private void onInserted(List<ActivityPipeline.PendingActivity> batch) {
+        for (ActivityPipeline.PendingActivity a : batch) {
+            afterCommit(a.recipientUsername(), c -> c.add(a.actorUsername(), a.type(), 1));
+        }
+        batch.forEach(this::push);
+    }
+
+    // Notificaciones ya insertadas que se han borrado: no se sabe si estaban leídas, se vuelve a sembrar
+    private void onRemoved(List<ActivityPipeline.PendingActivity> batch) {
+        batch.stream().map(ActivityPipeline.PendingActivity::recipientUsername).distinct().forEach(this::evict);
+    }
+
+    /**
+     * Marca como leídas las del tipo MESSAGE o, con cualquier otro valor, todas las que no son mensajes.
+     * Solo mueve la marca de lectura (una fila). Devuelve cuántas dejaron de estar sin leer, contadas en
+     * la base de datos; de los contadores en memoria se restan exactamente esas, así una notificación
+     * que llega entre la lectura de la última y la confirmación sigue contando como no leída.
+     */
+    public long markRead(String username, String type) {
+        User user = userRepository.findByUsername(username).orElse(null);
+        if (user == null) return 0;
+
+        boolean messages = MESSAGE.equals(type);
+        if (!messages) notificationGroupService.markAllRead(user.getId());
+        Long last = messages
+                ? activityRepository.findLastMessageId(user.getId())
+                : activityRepository.findLastNotificationId(user.getId());
+        ActivityReadMark mark = readMark(user.getId());
+        if (last == null || last <= mark.markFor(type)) return 0;
+
+        List<Object[]> cleared = activityRepository.countUnreadByActorAndTypeBetween(user.getId(), mark.markFor(type), last)
+                .stream().filter(row -> MESSAGE.equals(row[1]) == messages).toList();
+        if (messages) mark.setMessagesReadUpTo(last);
+        else mark.setNotificationsReadUpTo(last);
+        readMarkRepository.save(mark);
+
+        afterCommit(username, c -> cleared.forEach(row ->
+                c.add((String) row[0], (String) row[1], -((Number) row[2]).longValue())));
+        return cleared.stream().mapToLong(row -> ((Number) row[2]).longValue()).sum();
+    }
+
+    // Mensajes de un contacto concreto: un solo UPDATE sobre los que quedan por encima de la marca
+    public long markMessagesRead(String username, String from) {
+        User user = userRepository.findByUsername(username).orElse(null);
+        User actor = userRepository.findByUsername(from).orElse(null);
+        if (user == null || actor == null) return 0;
+
+        int updated = activityRepository.markMessagesRead(user.getId(), actor.getId(), readMark(user.getId()).getMessagesReadUpTo());
+        if (updated > 0) afterCommit(username, c -> c.add(from, MESSAGE, -updated));
+        return updated;
+    }
+
+    // Las notificaciones de un post se borran con él; se descartan los contadores de sus destinatarios
+    public void deleteByPost(Post post) {
+        List<String> recipients = activityRepository.findRecipientsByPost(post);
+        activityRepository.deleteByPost(post);
+        notificationGroupService.deleteByPost(post);
+        for (String recipient : recipients) {
+            TransactionHooks.afterCommit(() -> evict(recipient));
+        }
+    }
+
+    // Igual para un lote de posts (purga de un subárbol): una sentencia por tabla. Los grupos solo los
+    // escribe la cola: quien llama debería tomar activityPipeline.exclusive antes de abrir la transacción
+    public void deleteByPostIds(Collection<Long> postIds) {
+        List<String> recipients = activityRepository.findRecipientsByPostIds(postIds);
+        activityPipeline.exclusive(() -> {
+            activityRepository.deleteByPostIds(postIds);
+            notificationGroupService.deleteByPostIds(postIds);
+            return null;
+        });
+        for (String recipient : recipients) {
+            TransactionHooks.afterCommit(() -> evict(recipient));
+        }
+    }
+
+    // Solo si el destinatario está conectado (así no se siembran contadores de usuarios ausentes)
+    private void push(ActivityPipeline.PendingActivity a) {
+        String recipient = a.recipientUsername();
+        if (!eventStreamService.isConnected(recipient)) return;
+        eventStreamService.send(recipient, "activity", new ActivityEvent(
+                a.type(), a.actorUsername(), a.postId(), a.createdAt(),
+                unreadSummary(recipient),
+                MESSAGE.equals(a.type()) ? unreadByActor(recipient, MESSAGE) : null));
+    }
+
+    private ActivityReadMark readMark(Long userId) {
+        return readMarkRepository.findById(userId).orElseGet(() -> new ActivityReadMark(userId));
+    }
+
+    // --- LECTURA ---
+
+    // No leídas de un tipo agrupadas por actor (p. ej. mensajes por contacto del chat)
+    public Map<String, Long> unreadByActor(String username, String type) {
+        return countersFor(username).byActor(type);
+    }
+
+    // Badge: total, mensajes y resto de notificaciones
+    public Map<String, Long> unreadSummary(String username) {
+        return countersFor(username).summary();
+    }
+
+    private UnreadCounters countersFor(String username) {
+        UnreadCounters cached = cached(username);
+        if (cached != null) return cached;
+
+        long version = versions.get(stripe(username));
+        UnreadCounters seeded = new UnreadCounters();
+        User user = userRepository.findByUsername(username).orElse(null);
+        if (user == null) return seeded;
+
+        ActivityReadMark mark = readMark(user.getId());
+        for (Object[] row : activityRepository.countUnreadByActorAndType(
+                user.getId(), mark.getMessagesReadUpTo(), mark.getNotificationsReadUpTo())) {
+            seeded.add((String) row[0], (String) row[1], ((Number) row[2]).longValue());
+        }
+        synchronized (this) {
+            if (versions.get(stripe(username)) == version) counters.put(username, seeded);
+        }
+        return seeded;
+    }
+
+    private void afterCommit(String username, Consumer<UnreadCounters> change) {
+        TransactionHooks.afterCommit(() -> {
+            versions.incrementAndGet(stripe(username));
+            UnreadCounters c = cached(username);
+            if (c == null) return;
+            change.accept(c);
+            // Dos marcados concurrentes sobre las mismas filas pueden restar dos veces: se vuelve a sembrar
+            if (c.isInconsistent()) evict(username);
+        });
+    }
+
+    private int stripe(String username) {
+        return username.hashCode() & (versions.length() - 1);
+    }
+
+    private synchronized UnreadCounters cached(String username) {
+        return counters.get(username);
+    }
+
+    private synchronized void evict(String username) {
+        versions.incrementAndGet(stripe(username));
+        counters.remove(username);
+    }
+
+    /**
+     * No leídas de un destinatario por (actor, tipo), con los totales mantenidos aparte para leerlos en O(1).
+     */
+    private static final class UnreadCounters {
+        private final Map<String, Map<String, Long>> byType = new HashMap<>();
+        private long total;
+        private long messages;
+        private boolean inconsistent;
+
+        synchronized void add(String actor, String type, long delta) {
+            Map<String, Long> byActor = byType.computeIfAbsent(type, t -> new HashMap<>());
+            long count = byActor.getOrDefault(actor, 0L) + delta;
+            if (count < 0) inconsistent = true;
+            if (count <= 0) byActor.remove(actor);
+            else byActor.put(actor, count);
+
+            total += delta;
+            if (MESSAGE.equals(type)) messages += delta;
+        }
+
+        synchronized Map<String, Long> byActor(String type) {
+            return new HashMap<>(byType.getOrDefault(type, Map.of()));
+        }
+
+        synchronized Map<String, Long> summary() {
+            return Map.of("total", total, "messages", messages, "notifications", total - messages);
+        }
+
+        synchronized boolean isInconsistent() {
+            return inconsistent;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.dto.InboxEntry;
+import com.socialnetwork.entity.Conversation;
+import com.socialnetwork.entity.Message;
+import com.socialnetwork.repository.ConversationRepository;
+import com.socialnetwork.repository.MessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Bandeja de mensajes respaldada por la tabla conversations.
+ *
+ * Cada mensaje actualiza, en la misma transacción que lo guarda, la fila de cada lado de la pareja
+ * (último mensaje, vista previa y no leídos del destinatario). La bandeja ya no agrega la tabla
+ * messages entera: lee las filas del usuario ordenadas por recencia.
+ */
+@Service
+public class ConversationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationService.class);
+
+    @Autowired private ConversationRepository conversationRepository;
+    @Autowired private MessageRepository messageRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    // --- ESCRITURA ---
+
+    // Llamar dentro de la transacción que guarda el mensaje (ya con id)
+    public void onMessage(Message msg) {
+        apply(msg, 1);
+    }
+
+    private void apply(Message msg, int unread) {
+        Long senderId = msg.getSender().getId();
+        Long recipientId = msg.getRecipient().getId();
+        String preview = preview(msg.getContent());
+
+        // Upsert por lado: el primer mensaje entre los dos crea la fila, aunque ambos escriban a la vez
+        conversationRepository.recordMessage(senderId, recipientId, msg.getId(), msg.getCreatedAt(), preview, true, 0);
+        if (!senderId.equals(recipientId)) {
+            conversationRepository.recordMessage(recipientId, senderId, msg.getId(), msg.getCreatedAt(), preview, false, unread);
+        }
+    }
+
+    public void markRead(Long ownerId, Long partnerId) {
+        conversationRepository.markRead(ownerId, partnerId);
+    }
+
+    public void markAllRead(Long ownerId) {
+        conversationRepository.markAllRead(ownerId);
+    }
+
+    // --- LECTURA ---
+
+    public List<InboxEntry> inbox(Long ownerId, int limit) {
+        return conversationRepository.findInbox(ownerId, PageRequest.of(0, limit));
+    }
+
+    // --- MIGRACIÓN ---
+
+    // Primera arrancada con la tabla vacía: se construye a partir del último mensaje de cada pareja
+    // (los no leídos empiezan en 0; el badge del chat sale de ActivityService)
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        if (conversationRepository.count() > 0 || messageRepository.count() == 0) return;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<List<Long>, Message> lastByPair = new HashMap<>();
+            for (Message msg : messageRepository.findAllById(messageRepository.findLastMessageIdPerDirection())) {
+                Long a = msg.getSender().getId();
+                Long b = msg.getRecipient().getId();
+                List<Long> pair = List.of(Math.min(a, b), Math.max(a, b));
+                lastByPair.merge(pair, msg, (x, y) -> x.getId() > y.getId() ? x : y);
+            }
+            lastByPair.values().forEach(msg -> apply(msg, 0));
+            log.info("Bandeja de mensajes inicializada con {} conversaciones", lastByPair.size());
+        });
+    }
+
+    private static String preview(String content) {
+        if (content == null) return "";
+        String oneLine = content.replaceAll("\\s+", " ").trim();
+        return oneLine.length() <= Conversation.PREVIEW_LENGTH
+                ? oneLine
+                : oneLine.substring(0, Conversation.PREVIEW_LENGTH - 1) + "…";
+    }
+}
@@ -0,0 +1,56 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.entity.Post;
+import com.socialnetwork.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Modelo canónico de likes/reposts: el estado vive solo en el post original.
+ * Los reposts se enlazan con su original al leerlos, así un like cuesta las mismas
+ * escrituras tenga el post 0 o 10.000 reposts.
+ */
+@Service
+public class EngagementService {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private PostCounterService postCounterService;
+
+    // Enlaza cada repost de la lista con su original (una sola consulta para toda la página)
+    // y añade los likes/reposts pendientes de volcar
+    public <C extends Collection<Post>> C withCanonicalEngagement(C posts) {
+        Set<Long> originalIds = posts.stream()
+                .map(Post::getOriginalPostId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<Long, Post> originals = originalIds.isEmpty() ? Map.of() : postRepository.findAllById(originalIds).stream()
+                .collect(Collectors.toMap(Post::getId, Function.identity()));
+
+        for (Post post : posts) {
+            if (post.getOriginalPostId() != null) {
+                post.setEngagementSource(originals.get(post.getOriginalPostId()));
+            }
+        }
+        postCounterService.applyPending(posts);
+        postCounterService.applyPending(originals.values());
+        return posts;
+    }
+
+    public Post withCanonicalEngagement(Post post) {
+        withCanonicalEngagement(List.of(post));
+        return post;
+    }
+
+    // Id del post que guarda el estado (el propio post o su original si es un repost)
+    public Long canonicalId(Post post) {
+        return (post.getOriginalPostId() != null) ? post.getOriginalPostId() : post.getId();
+    }
+}
@@ -0,0 +1,274 @@
+package com.socialnetwork.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bus de eventos en proceso para el canal en tiempo real (Server-Sent Events).
+ *
+ * Cada conexión abierta tiene un buffer acotado; publicar solo encola y un pool pequeño de hilos
+ * vacía los buffers, así que un cliente lento nunca bloquea a quien publica. Si el buffer de una
+ * conexión se llena se descarta su contenido y se le envía un único evento "resync": el cliente
+ * vuelve a pedir el estado por REST en lugar de recibir cientos de eventos atrasados.
+ *
+ * emitter.send es una escritura bloqueante: un cliente que no lee deja su hilo parado hasta que el
+ * socket da timeout. Una conexión con un envío atascado más de send-timeout-ms, o que vuelve a llenar
+ * el buffer sin haber recibido nada desde el último resync, se abandona: deja de recibir eventos y se
+ * cierra en cuanto su hilo queda libre. Mientras tanto el pool crece en un hilo por cada envío
+ * atascado (hasta el doble), así que el resto de conexiones sigue recibiendo.
+ */
+@Service
+public class EventStreamService {
+
+    // Eventos pendientes por conexión como máximo
+    @Value("${socialnetwork.stream.buffer-size:256}")
+    private int bufferSize;
+
+    // Pestañas/dispositivos abiertos por usuario; al pasarse se cierra la conexión más antigua
+    @Value("${socialnetwork.stream.max-connections-per-user:5}")
+    private int maxConnectionsPerUser;
+
+    @Value("${socialnetwork.stream.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${socialnetwork.stream.sender-threads:4}")
+    private int senderThreads;
+
+    // Un envío que tarda más que esto se da por atascado y su conexión se abandona
+    @Value("${socialnetwork.stream.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    private final Map<String, Deque<Connection>> connections = new ConcurrentHashMap<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder abandoned = new LongAdder();
+    private ThreadPoolExecutor sender;
+    // Hilos de más en el pool, uno por envío atascado
+    private int stalledSenders;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threads = new AtomicInteger();
+        sender = new ThreadPoolExecutor(senderThreads, senderThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "sse-sender-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        connections.values().forEach(conns -> conns.forEach(c -> c.emitter.complete()));
+        sender.shutdownNow();
+    }
+
+    // --- CONEXIONES ---
+
+    public SseEmitter subscribe(String username) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        Connection conn = new Connection(username, emitter);
+
+        Connection evicted = null;
+        Deque<Connection> conns = connections.computeIfAbsent(username, u -> new ConcurrentLinkedDeque<>());
+        synchronized (conns) {
+            conns.addLast(conn);
+            if (conns.size() > maxConnectionsPerUser) evicted = conns.pollFirst();
+        }
+        openConnections.incrementAndGet();
+        if (evicted != null) evicted.emitter.complete();
+
+        emitter.onCompletion(() -> remove(conn));
+        emitter.onTimeout(() -> remove(conn));
+        emitter.onError(e -> remove(conn));
+
+        conn.offer(SseEmitter.event().name("ready").data(Map.of("username", username)));
+        return emitter;
+    }
+
+    public boolean isConnected(String username) {
+        Deque<Connection> conns = connections.get(username);
+        return conns != null && !conns.isEmpty();
+    }
+
+    private void remove(Connection conn) {
+        Deque<Connection> conns = connections.get(conn.username);
+        if (conns == null) return;
+        synchronized (conns) {
+            if (conns.remove(conn)) openConnections.decrementAndGet();
+            if (conns.isEmpty()) connections.remove(conn.username, conns);
+        }
+    }
+
+    // --- PUBLICACIÓN ---
+
+    // Se envía al confirmar la transacción actual (un mensaje que hace rollback no llega a nadie)
+    public void publish(String username, String type, Object data) {
+        TransactionHooks.afterCommit(() -> send(username, type, data));
+    }
+
+    // Envío inmediato a todas las conexiones abiertas del usuario
+    public void send(String username, String type, Object data) {
+        Deque<Connection> conns = connections.get(username);
+        if (conns == null) return;
+        for (Connection conn : conns) {
+            conn.offer(SseEmitter.event().name(type).data(data));
+        }
+    }
+
+    // Mantiene vivas las conexiones a través de proxies y detecta las que ya se cerraron
+    @Scheduled(fixedDelayString = "${socialnetwork.stream.heartbeat-ms:25000}")
+    public void heartbeat() {
+        connections.values().forEach(conns -> conns.forEach(c -> c.offer(SseEmitter.event().comment("ping"))));
+    }
+
+    // Abandona las conexiones con un envío atascado
+    @Scheduled(fixedDelayString = "${socialnetwork.stream.stall-check-ms:1000}")
+    public void reapStalled() {
+        long now = System.nanoTime();
+        long timeout = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        connections.values().forEach(conns -> conns.forEach(c -> {
+            long since = c.sendingSince;
+            if (since != 0 && now - since > timeout) {
+                compensate(c);
+                c.abandon();
+            }
+        }));
+    }
+
+    // Un hilo más mientras dure un envío atascado; como mucho el doble de sender-threads.
+    // La marca y el contador cambian juntos bajo este monitor, igual que al devolverlo en release():
+    // si el envío ya terminó (sendingSince a 0) no se compensa, así cada hilo de más tiene su devolución
+    private synchronized void compensate(Connection c) {
+        if (c.compensated || c.sendingSince == 0 || stalledSenders >= senderThreads) return;
+        c.compensated = true;
+        stalledSenders++;
+        sender.setMaximumPoolSize(senderThreads + stalledSenders);
+        sender.setCorePoolSize(senderThreads + stalledSenders);
+    }
+
+    private synchronized void release(Connection c) {
+        if (!c.compensated) return;
+        c.compensated = false;
+        stalledSenders--;
+        sender.setCorePoolSize(senderThreads + stalledSenders);
+        sender.setMaximumPoolSize(senderThreads + stalledSenders);
+    }
+
+    public Map<String, Long> stats() {
+        return Map.of(
+                "connections", (long) openConnections.get(),
+                "users", (long) connections.size(),
+                "delivered", delivered.sum(),
+                "dropped", dropped.sum(),
+                "abandoned", abandoned.sum(),
+                "stalledSenders", (long) stalledSenders);
+    }
+
+    /**
+     * Conexión SSE con su buffer acotado. Como mucho un hilo del pool la vacía a la vez, así que
+     * solo ese hilo toca el emitter (un send atascado retiene su monitor).
+     */
+    private class Connection {
+        private final String username;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Inicio (nanoTime) del envío en curso; 0 si no hay ninguno
+        private volatile long sendingSince;
+        // El envío en curso tiene un hilo de más en el pool (se devuelve al terminar; protegido por el servicio)
+        private boolean compensated;
+        private volatile boolean closed;
+        // El emitter ya se cerró (solo lo toca el hilo que vacía)
+        private boolean completed;
+        // Eventos entregados desde el último desbordamiento
+        private volatile boolean progressed = true;
+
+        Connection(String username, SseEmitter emitter) {
+            this.username = username;
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (closed) return;
+            if (!queue.offer(event)) {
+                if (!progressed) {
+                    // Sigue lleno y no ha recibido nada desde el resync: se cierra
+                    dropped.add(queue.size() + 1);
+                    abandon();
+                    return;
+                }
+                // Cliente demasiado lento: se descarta lo pendiente y se le pide que se resincronice
+                synchronized (queue) {
+                    dropped.add(queue.size() + 1);
+                    queue.clear();
+                    queue.offer(SseEmitter.event().name("resync").data(Map.of("reason", "buffer-overflow")));
+                    progressed = false;
+                }
+            }
+            scheduleDrain();
+        }
+
+        // Deja de recibir eventos; el emitter lo cierra el hilo que la vacía (ahora o al quedar libre)
+        void abandon() {
+            if (closed) return;
+            closed = true;
+            abandoned.increment();
+            queue.clear();
+            remove(this);
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (!draining.compareAndSet(false, true)) return;
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = queue.poll()) != null) {
+                    sendingSince = System.nanoTime();
+                    try {
+                        emitter.send(event);
+                    } finally {
+                        sendingSince = 0;
+                        release(this);
+                    }
+                    delivered.increment();
+                    progressed = true;
+                }
+                if (closed && !completed) {
+                    completed = true;
+                    emitter.complete();
+                }
+            } catch (Exception e) {
+                // La conexión se cerró del otro lado
+                closed = true;
+                completed = true;
+                queue.clear();
+                remove(this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // Lo que llegó justo al terminar (o un abandono que no llegó a ver este hilo)
+            if (closed ? !completed : !queue.isEmpty()) scheduleDrain();
+        }
+    }
+}
@@ -0,0 +1,601 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.entity.MediaBlob;
+import com.socialnetwork.repository.MediaBlobRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Procesado de las imágenes subidas (posts y avatares).
+ *
+ * La imagen se decodifica y se vuelve a codificar (JPEG, o PNG si tiene transparencia), lo que quita
+ * los metadatos (EXIF, GPS...). De ellos solo se aplica antes la orientación EXIF, para que las fotos
+ * del móvil no queden giradas, y los JPEG en CMYK se pasan a RGB. Se generan versiones reducidas: "feed" para los posts y "sm"/"md"
+ * para los avatares (que además se recortan cuadrados). El nombre del fichero es el hash del
+ * contenido: subir dos veces la misma imagen no la procesa ni la guarda otra vez.
+ *
+ * Cada imagen tiene su fila en media_blobs con las referencias (posts y avatares que la usan). Al
+ * quedarse sin ninguna, pasado un margen, se borran sus ficheros: las imágenes de posts borrados,
+ * avatares sustituidos o subidas que no llegaron a guardarse no se acumulan en disco.
+ *
+ * Decodificar una foto grande ocupa mucha memoria, así que se hace en un pool pequeño con cola
+ * acotada; si está lleno la subida se rechaza en lugar de tumbar el servidor.
+ */
+@Service
+public class ImageService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageService.class);
+
+    public enum Kind { POST, AVATAR }
+
+    // URL con la que se guardan en posts.image_url y users.avatar_url
+    public static final String URL_PREFIX = "/api/posts/images/";
+
+    // Fichero principal con nombre por contenido: [avatar_]<32 hex>.<ext>
+    private static final Pattern MAIN_FILE = Pattern.compile("((?:avatar_)?[0-9a-f]{32})\\.(jpg|png)");
+
+    // Cerrojos por franja de hash: la purga no borra una imagen mientras se reutiliza o se registra
+    private static final int STRIPES = 64;
+
+    // Lado mayor de la versión principal y de cada variante
+    private static final int POST_FULL = 2048;
+    private static final Map<String, Integer> POST_VARIANTS = Map.of("feed", 720);
+    private static final int AVATAR_FULL = 400;
+    private static final Map<String, Integer> AVATAR_VARIANTS = Map.of("sm", 64, "md", 128);
+
+    private static final String UNSUPPORTED_FORMAT = "Formato de imagen no soportado (usa JPEG, PNG, GIF o BMP)";
+
+    @Value("${socialnetwork.images.worker-threads:2}")
+    private int workerThreads;
+
+    @Value("${socialnetwork.images.queue-capacity:16}")
+    private int queueCapacity;
+
+    // Imágenes con más píxeles que esto se rechazan sin decodificarlas
+    @Value("${socialnetwork.images.max-pixels:40000000}")
+    private long maxPixels;
+
+    @Value("${socialnetwork.images.jpeg-quality:0.82}")
+    private float jpegQuality;
+
+    @Value("${socialnetwork.images.timeout-seconds:30}")
+    private long timeoutSeconds;
+
+    // Minutos que una imagen sin referencias se conserva (la subida y el guardado del post no son atómicos)
+    @Value("${socialnetwork.images.orphan-grace-minutes:60}")
+    private long orphanGraceMinutes;
+
+    @Value("${socialnetwork.images.purge-batch-size:100}")
+    private int purgeBatchSize;
+
+    @Autowired private MediaStorage mediaStorage;
+    @Autowired private MediaBlobRepository mediaBlobRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    private ThreadPoolExecutor workers;
+    private final Object[] stripes = new Object[STRIPES];
+    private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new Object();
+        AtomicInteger threads = new AtomicInteger();
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "image-worker-" + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+
+    // --- SUBIDA ---
+
+    /**
+     * Procesa y guarda la imagen; devuelve el nombre del fichero principal (el que va en la URL).
+     * IllegalArgumentException si no es una imagen válida, RejectedExecutionException si el pool está lleno.
+     */
+    public String store(MultipartFile file, Kind kind) throws IOException {
+        // Una sola lectura de la subida: el hash se calcula mientras se copia
+        MessageDigest digest = sha256();
+        byte[] bytes;
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            // Directo al array de su tamaño (el límite de subida lo acota), sin búferes intermedios
+            bytes = new byte[Math.toIntExact(file.getSize())];
+            if (in.readNBytes(bytes, 0, bytes.length) < bytes.length) throw new IOException("Subida incompleta");
+        }
+        // 128 bits del SHA-256 del contenido original
+        String base = (kind == Kind.AVATAR ? "avatar_" : "") + HexFormat.of().formatHex(digest.digest(), 0, 16);
+
+        String existing = reuse(base);
+        if (existing != null) {
+            deduplicated.increment();
+            return existing;
+        }
+
+        Future<String> job = workers.submit(() -> process(bytes, base, kind));
+        try {
+            String name = job.get(timeoutSeconds, TimeUnit.SECONDS);
+            register(base, name.substring(name.lastIndexOf('.') + 1));
+            processed.increment();
+            return name;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException iae) throw iae;
+            if (e.getCause() instanceof IOException ioe) throw ioe;
+            throw new IOException("Error procesando la imagen", e.getCause());
+        } catch (TimeoutException e) {
+            job.cancel(true);
+            throw new IOException("Tiempo agotado procesando la imagen", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Procesado de imagen interrumpido", e);
+        }
+    }
+
+    private String process(byte[] bytes, String base, Kind kind) throws IOException {
+        JpegMarkers markers = JpegMarkers.scan(bytes);
+        BufferedImage source = orient(decode(bytes, markers), markers.orientation());
+        boolean alpha = source.getColorModel().hasAlpha();
+        String ext = alpha ? "png" : "jpg";
+        if (kind == Kind.AVATAR) source = cropSquare(source);
+
+        Map<String, Integer> variants = (kind == Kind.AVATAR) ? AVATAR_VARIANTS : POST_VARIANTS;
+        for (Map.Entry<String, Integer> variant : variants.entrySet()) {
+            write(scaleToFit(source, variant.getValue(), alpha), base + "_" + variant.getKey() + "." + ext, ext);
+        }
+        // La principal la última: si existe, las variantes también
+        write(scaleToFit(source, kind == Kind.AVATAR ? AVATAR_FULL : POST_FULL, alpha), base + "." + ext, ext);
+        return base + "." + ext;
+    }
+
+    private BufferedImage decode(byte[] bytes, JpegMarkers markers) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = (in != null) ? ImageIO.getImageReaders(in) : Collections.emptyIterator();
+            // WebP, HEIC...: el cliente ya no los deja elegir, pero se responde con un mensaje claro
+            if (!readers.hasNext()) throw new IllegalArgumentException(UNSUPPORTED_FORMAT);
+            ImageReader reader = readers.next();
+            try {
+                // Sin metadatos: no se leen ni se vuelven a escribir (la orientación ya viene en markers)
+                reader.setInput(in, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    throw new IllegalArgumentException("Imagen demasiado grande");
+                }
+                if (markers.jpeg() && reader.getRawImageType(0) == null) {
+                    // CMYK o YCCK (Photoshop, imprenta): ImageIO no lo convierte a RGB, se hace a mano
+                    return cmykToRgb(reader.readRaster(0, null), markers);
+                }
+                return reader.read(0);
+            } catch (IIOException e) {
+                // Cabecera válida pero contenido que ImageIO no sabe leer (corrupto, truncado...)
+                throw new IllegalArgumentException("Imagen no válida", e);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Ya subida y con sus ficheros: se renueva el margen de purga y se reutiliza
+    private String reuse(String base) throws IOException {
+        synchronized (stripe(base)) {
+            Optional<MediaBlob> blob = mediaBlobRepository.findById(base);
+            if (blob.isEmpty()) return null;
+            String name = base + "." + blob.get().getExtension();
+            if (!mediaStorage.exists(name)) return null;
+            transactionTemplate.executeWithoutResult(status -> mediaBlobRepository.touch(base, LocalDateTime.now()));
+            return name;
+        }
+    }
+
+    private void register(String base, String ext) {
+        synchronized (stripe(base)) {
+            transactionTemplate.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                if (mediaBlobRepository.touch(base, now) == 0) mediaBlobRepository.save(new MediaBlob(base, ext, now));
+            });
+        }
+    }
+
+    // --- REFERENCIAS (en la transacción de quien llama, si la hay) ---
+
+    // Un post o avatar pasa a usar la imagen de esta URL (las subidas antiguas no se cuentan)
+    public void acquire(String url) {
+        addReferences(url, 1);
+    }
+
+    public void release(String url) {
+        addReferences(url, -1);
+    }
+
+    // Varias a la vez (purga de un subárbol): una actualización por imagen distinta
+    public void releaseAll(Collection<String> urls) {
+        Map<String, Integer> deltas = new HashMap<>();
+        for (String url : urls) {
+            String id = blobId(url);
+            if (id != null) deltas.merge(id, -1, Integer::sum);
+        }
+        if (deltas.isEmpty()) return;
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status ->
+                deltas.forEach((id, delta) -> mediaBlobRepository.addReferences(id, delta, now)));
+    }
+
+    private void addReferences(String url, int delta) {
+        String id = blobId(url);
+        if (id == null) return;
+        transactionTemplate.executeWithoutResult(status -> mediaBlobRepository.addReferences(id, delta, LocalDateTime.now()));
+    }
+
+    private static String blobId(String url) {
+        if (url == null || !url.startsWith(URL_PREFIX)) return null;
+        Matcher m = MAIN_FILE.matcher(url.substring(URL_PREFIX.length()));
+        return m.matches() ? m.group(1) : null;
+    }
+
+    // --- PURGA ---
+
+    @Scheduled(initialDelayString = "${socialnetwork.images.purge-initial-delay-ms:120000}",
+               fixedDelayString = "${socialnetwork.images.purge-interval-ms:600000}")
+    public synchronized void purgeOrphans() {
+        LocalDateTime before = LocalDateTime.now().minusMinutes(orphanGraceMinutes);
+        try {
+            List<MediaBlob> orphans;
+            do {
+                orphans = mediaBlobRepository.findOrphans(before, PageRequest.of(0, purgeBatchSize));
+                for (MediaBlob blob : orphans) {
+                    synchronized (stripe(blob.getId())) {
+                        Integer deleted = transactionTemplate.execute(status -> mediaBlobRepository.deleteIfOrphan(blob.getId(), before));
+                        if (deleted == null || deleted == 0) continue;
+                        for (String name : fileNames(blob.getId(), blob.getExtension())) {
+                            mediaStorage.delete(name);
+                            removalListeners.forEach(listener -> listener.accept(name));
+                        }
+                        purged.increment();
+                    }
+                }
+            } while (orphans.size() == purgeBatchSize);
+        } catch (IOException | RuntimeException e) {
+            log.error("Error purgando imágenes sin referencias (se sigue en la siguiente pasada)", e);
+        }
+    }
+
+    // Fichero borrado por la purga (la entrega de imágenes olvida lo que tenía de él)
+    public void onRemoved(Consumer<String> listener) {
+        removalListeners.add(listener);
+    }
+
+    private static List<String> fileNames(String base, String ext) {
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> variants = base.startsWith("avatar_") ? AVATAR_VARIANTS : POST_VARIANTS;
+        for (String variant : variants.keySet()) names.add(base + "_" + variant + "." + ext);
+        names.add(base + "." + ext);
+        return names;
+    }
+
+    private Object stripe(String base) {
+        return stripes[Math.floorMod(base.hashCode(), STRIPES)];
+    }
+
+    /**
+     * Imágenes ya en disco sin fila (subidas antes de contar referencias): se les crea la fila y se
+     * suman las referencias que tienen en posts y avatares. La fila se crea antes de contar, así que
+     * un post guardado mientras tanto puede contarse dos veces (se conserva), nunca quedarse fuera.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void adoptExisting() {
+        Map<String, String> adopted = new HashMap<>();
+        try {
+            for (String name : mediaStorage.list()) {
+                Matcher m = MAIN_FILE.matcher(name);
+                if (m.matches() && !mediaBlobRepository.existsById(m.group(1))) adopted.put(m.group(1), m.group(2));
+            }
+        } catch (IOException e) {
+            log.error("No se pudieron revisar las imágenes guardadas", e);
+            return;
+        }
+        if (adopted.isEmpty()) return;
+
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status ->
+                adopted.forEach((id, ext) -> mediaBlobRepository.save(new MediaBlob(id, ext, now))));
+
+        Map<String, Integer> references = new HashMap<>();
+        jdbcTemplate.query("SELECT image_url FROM posts WHERE image_url LIKE ? AND original_post_id IS NULL " +
+                "UNION ALL SELECT avatar_url FROM users WHERE avatar_url LIKE ?", rs -> {
+            String id = blobId(rs.getString(1));
+            if (id != null && adopted.containsKey(id)) references.merge(id, 1, Integer::sum);
+        }, URL_PREFIX + "%", URL_PREFIX + "%");
+        transactionTemplate.executeWithoutResult(status ->
+                references.forEach((id, count) -> mediaBlobRepository.addReferences(id, count, now)));
+        log.info("Imágenes sin registrar adoptadas: {} ({} con referencias)", adopted.size(), references.size());
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("processed", processed.sum());
+        stats.put("deduplicated", deduplicated.sum());
+        stats.put("purged", purged.sum());
+        stats.put("queued", (long) workers.getQueue().size());
+        stats.put("active", (long) workers.getActiveCount());
+        return stats;
+    }
+
+    // --- LECTURA ---
+
+    /**
+     * Fichero a servir para el nombre pedido y la variante (feed, sm, md...). Si la variante no existe
+     * (imágenes antiguas, nombre desconocido) se sirve la principal. Null si el nombre no es válido.
+     * Las imágenes con nombre por contenido siempre tienen sus variantes: no se pregunta al almacén.
+     */
+    public String resolve(String filename, String size) throws IOException {
+        if (filename.contains("/") || filename.contains("\\") || filename.contains("..")) return null;
+        int dot = filename.lastIndexOf('.');
+        if (size == null || !size.matches("[a-z]{1,8}") || dot <= 0) return filename;
+
+        String variant = filename.substring(0, dot) + "_" + size + filename.substring(dot);
+        Matcher m = MAIN_FILE.matcher(filename);
+        if (m.matches()) {
+            Map<String, Integer> variants = m.group(1).startsWith("avatar_") ? AVATAR_VARIANTS : POST_VARIANTS;
+            return variants.containsKey(size) ? variant : filename;
+        }
+        return mediaStorage.exists(variant) ? variant : filename;
+    }
+
+    // --- TRANSFORMACIONES ---
+
+    // Gira o voltea según la etiqueta Orientation de EXIF (1 = tal cual; 5-8 intercambian ancho y alto)
+    private static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation < 2 || orientation > 8) return image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // espejo horizontal
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // 180°
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // espejo vertical
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // trasponer
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // 90° horario
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // trasponer por la otra diagonal
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);  // 90° antihorario
+        };
+        boolean swap = orientation >= 5;
+        boolean alpha = image.getColorModel().hasAlpha();
+        BufferedImage out = new BufferedImage(swap ? h : w, swap ? w : h,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.drawImage(image, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    /**
+     * CMYK a RGB sin perfil de color (aproximado, suficiente para mostrarla). Con marcador Adobe los
+     * valores vienen invertidos, y si es YCCK primero se deshace la conversión YCC de los tres primeros canales.
+     */
+    private static BufferedImage cmykToRgb(Raster raster, JpegMarkers markers) {
+        if (raster.getNumBands() != 4) throw new IllegalArgumentException("Imagen no válida");
+        int w = raster.getWidth();
+        int h = raster.getHeight();
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        int[] px = new int[4];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                raster.getPixel(raster.getMinX() + x, raster.getMinY() + y, px);
+                int c = px[0], m = px[1], ye = px[2], k = px[3];
+                if (markers.adobeTransform() == 2) {
+                    int cb = px[1], cr = px[2];
+                    c = 255 - clamp(px[0] + 1.402 * cr - 178.956);
+                    m = 255 - clamp(px[0] - 0.34414 * cb - 0.71414 * cr + 135.95984);
+                    ye = 255 - clamp(px[0] + 1.772 * cb - 226.316);
+                }
+                // Tinta de 0 (nada) a 255 (toda)
+                if (markers.adobe()) {
+                    c = 255 - c;
+                    m = 255 - m;
+                    ye = 255 - ye;
+                    k = 255 - k;
+                }
+                int r = (255 - c) * (255 - k) / 255;
+                int g = (255 - m) * (255 - k) / 255;
+                int b = (255 - ye) * (255 - k) / 255;
+                out.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return out;
+    }
+
+    private static int clamp(double v) {
+        return (int) Math.max(0, Math.min(255, v));
+    }
+
+    private static BufferedImage cropSquare(BufferedImage image) {
+        int side = Math.min(image.getWidth(), image.getHeight());
+        return image.getSubimage((image.getWidth() - side) / 2, (image.getHeight() - side) / 2, side, side);
+    }
+
+    // Reduce a la mitad mientras sobre el doble (mejor calidad que un solo salto) y ajusta al final
+    private static BufferedImage scaleToFit(BufferedImage image, int maxSide, boolean alpha) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        double scale = Math.min(1.0, (double) maxSide / Math.max(w, h));
+        int targetW = Math.max(1, (int) Math.round(w * scale));
+        int targetH = Math.max(1, (int) Math.round(h * scale));
+
+        BufferedImage current = image;
+        do {
+            w = (w / 2 >= targetW) ? w / 2 : targetW;
+            h = (h / 2 >= targetH) ? h / 2 : targetH;
+            current = draw(current, w, h, alpha);
+        } while (w != targetW || h != targetH);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage image, int w, int h, boolean alpha) {
+        BufferedImage out = new BufferedImage(w, h, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (!alpha) {
+                g.setColor(Color.WHITE);
+                g.fillRect(0, 0, w, h);
+            }
+            g.drawImage(image, 0, 0, w, h, null);
+        } finally {
+            g.dispose();
+        }
+        return out;
+    }
+
+    // Se codifica en memoria y se entrega entera al almacén (disco o bucket)
+    private void write(BufferedImage image, String name, String ext) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream(64 * 1024);
+        if ("jpg".equals(ext)) {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(encoded)) {
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+        } else {
+            ImageIO.write(image, "png", encoded);
+        }
+        mediaStorage.put(name, encoded.toByteArray(), "jpg".equals(ext) ? "image/jpeg" : "image/png");
+    }
+
+    /**
+     * Lo poco que se lee de los metadatos de un JPEG, recorriendo sus segmentos hasta el inicio de los
+     * datos: la orientación del APP1/EXIF y el marcador Adobe (APP14) que dice cómo vienen los CMYK.
+     * El resto (GPS, cámara...) ni se lee ni se guarda.
+     */
+    private record JpegMarkers(boolean jpeg, int orientation, boolean adobe, int adobeTransform) {
+
+        private static final JpegMarkers NONE = new JpegMarkers(false, 1, false, -1);
+
+        static JpegMarkers scan(byte[] b) {
+            if (b.length < 4 || (b[0] & 0xFF) != 0xFF || (b[1] & 0xFF) != 0xD8) return NONE;
+            int orientation = 1;
+            boolean adobe = false;
+            int transform = -1;
+            int pos = 2;
+            while (pos + 4 <= b.length && (b[pos] & 0xFF) == 0xFF) {
+                int marker = b[pos + 1] & 0xFF;
+                if (marker == 0xFF) { pos++; continue; }                        // relleno
+                if (marker == 0xDA || marker == 0xD9) break;                    // empiezan los datos
+                int length = u16(b, pos + 2, false);
+                int start = pos + 4;
+                int end = Math.min(b.length, pos + 2 + length);
+                if (length < 2) break;
+                if (marker == 0xE1 && startsWith(b, start, "Exif\0\0")) {
+                    orientation = exifOrientation(b, start + 6, end);
+                } else if (marker == 0xEE && startsWith(b, start, "Adobe") && end - start >= 12) {
+                    adobe = true;
+                    transform = b[start + 11] & 0xFF;
+                }
+                pos += 2 + length;
+            }
+            return new JpegMarkers(true, orientation, adobe, transform);
+        }
+
+        // Busca la etiqueta 0x0112 en el IFD0 de la cabecera TIFF; 1 si no está o el bloque está mal
+        private static int exifOrientation(byte[] b, int tiff, int end) {
+            if (tiff + 8 > end) return 1;
+            boolean little = b[tiff] == 'I' && b[tiff + 1] == 'I';
+            if (!little && !(b[tiff] == 'M' && b[tiff + 1] == 'M')) return 1;
+            long ifd = tiff + u32(b, tiff + 4, little);
+            if (ifd + 2 > end) return 1;
+            int entries = u16(b, (int) ifd, little);
+            for (int i = 0; i < entries; i++) {
+                int entry = (int) ifd + 2 + i * 12;
+                if (entry + 12 > end) return 1;
+                if (u16(b, entry, little) == 0x0112) {
+                    int value = u16(b, entry + 8, little);
+                    return (value >= 1 && value <= 8) ? value : 1;
+                }
+            }
+            return 1;
+        }
+
+        private static boolean startsWith(byte[] b, int at, String prefix) {
+            if (at + prefix.length() > b.length) return false;
+            for (int i = 0; i < prefix.length(); i++) {
+                if (b[at + i] != (byte) prefix.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private static int u16(byte[] b, int at, boolean little) {
+            int b0 = b[at] & 0xFF, b1 = b[at + 1] & 0xFF;
+            return little ? (b1 << 8) | b0 : (b0 << 8) | b1;
+        }
+
+        private static long u32(byte[] b, int at, boolean little) {
+            long hi = u16(b, little ? at + 2 : at, little);
+            long lo = u16(b, little ? at : at + 2, little);
+            return (hi << 16) | lo;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
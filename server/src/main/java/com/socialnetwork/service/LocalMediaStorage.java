@@ -0,0 +1,77 @@
+package com.socialnetwork.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Imágenes en una carpeta del disco local (una sola instancia del servidor). Se sirven desde
+ * aquí con sendfile (MediaDeliveryService).
+ */
+@Service
+@ConditionalOnProperty(name = "socialnetwork.media.storage", havingValue = "local", matchIfMissing = true)
+public class LocalMediaStorage implements MediaStorage {
+
+    @Value("${socialnetwork.images.dir:uploads}")
+    private String dir;
+
+    private Path root;
+
+    @PostConstruct
+    void init() {
+        root = Paths.get(dir);
+    }
+
+    // Se escribe en un temporal de la misma carpeta y se mueve: nadie sirve un fichero a medio escribir
+    @Override
+    public void put(String name, byte[] content, String contentType) throws IOException {
+        Files.createDirectories(root);
+        Path tmp = Files.createTempFile(root, ".upload-", ".tmp");
+        try {
+            Files.write(tmp, content);
+            Files.move(tmp, root.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public boolean exists(String name) {
+        return Files.exists(root.resolve(name));
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        Files.deleteIfExists(root.resolve(name));
+    }
+
+    @Override
+    public List<String> list() throws IOException {
+        List<String> names = new ArrayList<>();
+        if (!Files.isDirectory(root)) return names;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!name.startsWith(".")) names.add(name);
+            }
+        }
+        return names;
+    }
+
+    @Override
+    public Path localPath(String name) {
+        return root.resolve(name);
+    }
+
+    @Override
+    public Optional<DirectLink> directLink(String name) {
+        return Optional.empty();
+    }
+}
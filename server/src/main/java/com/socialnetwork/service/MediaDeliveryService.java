@@ -0,0 +1,296 @@
+package com.socialnetwork.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Entrega de las imágenes subidas (/api/posts/images/...).
+ *
+ * Los nombres generados por ImageService son el hash del contenido: un nombre nunca cambia de
+ * bytes, así que se sirven con ETag fuerte (el propio nombre) y Cache-Control immutable de un año.
+ * Las subidas antiguas (uuid_nombre-original) llevan un ETag de tamaño y fecha y una caché corta.
+ *
+ * Lo que se averigua por petición (qué fichero sirve cada tamaño, su tamaño, fecha y tipo) se guarda
+ * en una caché LRU: una petición repetida no toca el disco hasta el envío. El envío es sin copias:
+ * con Tomcat se delega en sendfile, y si no, FileChannel.transferTo sobre la salida. Se atienden
+ * If-None-Match (304) y rangos de bytes simples (206/416).
+ *
+ * Con un almacén remoto (S3) los bytes no pasan por aquí: se redirige a su URL directa.
+ */
+@Service
+public class MediaDeliveryService {
+
+    // Nombres de ImageService: [avatar_]<32 hex>[_variante].<ext>
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("(avatar_)?[0-9a-f]{32}(_[a-z]+)?\\.(jpg|png)");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    // Atributos de Tomcat para que el conector envíe el fichero con sendfile al terminar la petición
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired private ImageService imageService;
+    @Autowired private MediaStorage mediaStorage;
+
+    // Combinaciones nombre + tamaño cuyos datos de fichero se guardan (LRU)
+    @Value("${socialnetwork.media.metadata-cache-size:10000}")
+    private int metadataCacheSize;
+
+    // Por debajo de esto se copia directamente (sendfile no compensa en ficheros pequeños)
+    @Value("${socialnetwork.media.sendfile-min-bytes:49152}")
+    private long sendfileMinBytes;
+
+    // Caché de las subidas antiguas, que no tienen nombre por contenido
+    @Value("${socialnetwork.media.legacy-max-age-seconds:3600}")
+    private long legacyMaxAgeSeconds;
+
+    private Map<String, FileInfo> files;
+    private final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder partial = new LongAdder();
+    private final LongAdder sendfile = new LongAdder();
+    private final LongAdder metadataMisses = new LongAdder();
+    private final LongAdder redirects = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+
+    private record FileInfo(Path path, long length, String etag, String contentType, String cacheControl) {}
+
+    @PostConstruct
+    void init() {
+        files = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FileInfo> eldest) {
+                return size() > metadataCacheSize;
+            }
+        });
+        imageService.onRemoved(this::forget);
+    }
+
+    // Fichero borrado (imagen sin referencias): fuera de la caché con cualquier tamaño que lo sirviera
+    private void forget(String name) {
+        synchronized (files) {
+            files.values().removeIf(info -> info.path().getFileName().toString().equals(name));
+        }
+    }
+
+    /**
+     * Responde a GET/HEAD de la imagen: 200, 206, 304, 400 (nombre no válido), 404 o 416; o 302 a la
+     * descarga directa si el almacén no es el disco local.
+     */
+    public void serve(String filename, String size, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key = (size == null) ? filename : filename + "?" + size;
+        FileInfo info = files.get(key);
+        if (info == null) {
+            metadataMisses.increment();
+            String name = imageService.resolve(filename, size);
+            if (name == null) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+            Path local = mediaStorage.localPath(name);
+            if (local == null) {
+                redirect(name, response);
+                return;
+            }
+            info = load(key, local);
+            if (info == null) {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+        }
+
+        response.setHeader(HttpHeaders.ETAG, info.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, info.cacheControl());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), info.etag())) {
+            notModified.increment();
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = info.length() - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(info.etag()))) {
+            long[] bounds = parseRange(range, info.length());
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + info.length());
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                partial.increment();
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + info.length());
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(info.contentType());
+        response.setContentLengthLong(count);
+        served.increment();
+        if ("HEAD".equals(request.getMethod()) || count == 0) return;
+
+        if (count >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, info.path().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            sendfile.increment();
+        } else {
+            try {
+                transfer(info.path(), start, count, response);
+            } catch (NoSuchFileException e) {
+                // Borrado desde que se guardó en la caché
+                files.values().remove(info);
+                if (!response.isCommitted()) {
+                    response.reset();
+                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                }
+                return;
+            }
+        }
+        bytesSent.add(count);
+    }
+
+    // --- FICHERO ---
+
+    // Los bytes los sirve el bucket (o su CDN): aquí solo la redirección, cacheable mientras la URL valga
+    private void redirect(String name, HttpServletResponse response) {
+        MediaStorage.DirectLink link = mediaStorage.directLink(name).orElseThrow();
+        redirects.increment();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=" + link.maxAgeSeconds());
+        response.setHeader(HttpHeaders.LOCATION, link.url());
+        response.setStatus(HttpServletResponse.SC_FOUND);
+    }
+
+    private FileInfo load(String key, Path path) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (!attributes.isRegularFile()) return null;
+
+        String name = path.getFileName().toString();
+        Matcher m = CONTENT_ADDRESSED.matcher(name);
+        FileInfo info = m.matches()
+                ? new FileInfo(path, attributes.size(), "\"" + name.substring(0, name.lastIndexOf('.')) + "\"", contentType(path), IMMUTABLE)
+                : new FileInfo(path, attributes.size(),
+                        "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"",
+                        contentType(path), "public, max-age=" + legacyMaxAgeSeconds);
+        files.put(key, info);
+        return info;
+    }
+
+    // Un tipo por extensión: probeContentType solo la primera vez
+    private String contentType(Path path) {
+        String name = path.getFileName().toString();
+        String ext = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return contentTypes.computeIfAbsent(ext, e -> {
+            try {
+                String type = Files.probeContentType(path);
+                return type != null ? type : "application/octet-stream";
+            } catch (IOException ex) {
+                return "application/octet-stream";
+            }
+        });
+    }
+
+    // transferTo hace las vueltas necesarias: puede enviar menos de lo pedido en cada llamada
+    private static void transfer(Path path, long start, long count, HttpServletResponse response) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = file.transferTo(position, remaining, out);
+                if (sent <= 0) break;
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    // --- CABECERAS ---
+
+    // If-None-Match: lista de etiquetas o "*"; la comparación es débil (se ignora el W/)
+    private static boolean matches(String header, String etag) {
+        if (header == null) return false;
+        for (String candidate : header.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Rango de un solo tramo: {inicio, fin} (inclusivo). Vacío si no se atiende (varios tramos o
+     * sintaxis desconocida: se envía todo) y null si no se puede satisfacer (416).
+     */
+    private static long[] parseRange(String header, long length) {
+        Matcher m = RANGE.matcher(header.trim());
+        if (!m.matches()) return new long[0];
+        String first = m.group(1);
+        String last = m.group(2);
+        try {
+            if (first.isEmpty()) {
+                // bytes=-N: los N últimos
+                if (last.isEmpty()) return new long[0];
+                long suffix = Long.parseLong(last);
+                if (suffix == 0 || length == 0) return null;
+                return new long[]{Math.max(0, length - suffix), length - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            if (start >= length) return null;
+            if (end < start) return new long[0];
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("served", served.sum());
+        stats.put("notModified", notModified.sum());
+        stats.put("partial", partial.sum());
+        stats.put("sendfile", sendfile.sum());
+        stats.put("bytesSent", bytesSent.sum());
+        stats.put("redirects", redirects.sum());
+        stats.put("metadataMisses", metadataMisses.sum());
+        stats.put("metadataCached", (long) files.size());
+        return stats;
+    }
+}
@@ -0,0 +1,36 @@
+package com.socialnetwork.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Dónde se guardan los ficheros de las imágenes subidas: disco local (LocalMediaStorage, por
+ * defecto) o un bucket con la API de S3 (S3MediaStorage, socialnetwork.media.storage=s3). Los
+ * nombres son los de ImageService (hash del contenido), sin rutas.
+ */
+public interface MediaStorage {
+
+    /**
+     * URL a la que se redirige al cliente para que descargue el fichero sin pasar por el servidor,
+     * y cuántos segundos se puede reutilizar la redirección.
+     */
+    record DirectLink(String url, long maxAgeSeconds) {}
+
+    // Guarda el fichero completo: quien lo lea ve el anterior o el nuevo, nunca uno a medias
+    void put(String name, byte[] content, String contentType) throws IOException;
+
+    boolean exists(String name) throws IOException;
+
+    void delete(String name) throws IOException;
+
+    // Todos los ficheros guardados (solo para adoptar imágenes antiguas al arrancar)
+    List<String> list() throws IOException;
+
+    // Fichero en disco para servirlo con sendfile; null si no está en este nodo
+    Path localPath(String name);
+
+    // Descarga directa (p. ej. URL prefirmada); vacío si lo sirve la aplicación
+    Optional<DirectLink> directLink(String name);
+}
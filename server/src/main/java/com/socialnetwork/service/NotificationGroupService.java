@@ -0,0 +1,191 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.dto.FeedCursor;
+import com.socialnetwork.dto.NotificationGroupDTO;
+import com.socialnetwork.dto.PostDTO;
+import com.socialnetwork.entity.NotificationGroup;
+import com.socialnetwork.entity.Post;
+import com.socialnetwork.entity.User;
+import com.socialnetwork.repository.ActivityRepository;
+import com.socialnetwork.repository.NotificationGroupRepository;
+import com.socialnetwork.repository.PostRepository;
+import com.socialnetwork.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Notificaciones agrupadas por (destinatario, tipo, post) para la página de actividad.
+ *
+ * Los grupos se actualizan en la misma transacción que inserta cada lote de notificaciones
+ * (ActivityPipeline, un único hilo que los crea), con UPDATE relativos sobre los contadores porque
+ * marcar como leídas y borrar un post escriben las mismas filas desde la petición. Así leer la página es una consulta por cursor
+ * sobre los grupos más una para los actores de muestra, tenga el post 10 likes o 10.000.
+ * Los mensajes no se agrupan: van por el chat.
+ */
+@Service
+public class NotificationGroupService {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationGroupService.class);
+
+    @Autowired private NotificationGroupRepository groupRepository;
+    @Autowired private ActivityRepository activityRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private PostRepository postRepository;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    // --- ESCRITURA (dentro de la transacción del lote) ---
+
+    public void apply(List<ActivityPipeline.PendingActivity> inserted) {
+        // Se agrupa el lote en memoria: una lectura y una escritura por grupo, no por notificación
+        Map<List<Object>, List<ActivityPipeline.PendingActivity>> byKey = new LinkedHashMap<>();
+        for (ActivityPipeline.PendingActivity a : inserted) {
+            if (ActivityService.MESSAGE.equals(a.type())) continue;
+            byKey.computeIfAbsent(Arrays.asList(a.recipientId(), a.type(), a.postId()), k -> new ArrayList<>()).add(a);
+        }
+
+        for (List<ActivityPipeline.PendingActivity> group : byKey.values()) {
+            ActivityPipeline.PendingActivity first = group.get(0);
+            List<String> newestFirst = new ArrayList<>();
+            for (int i = group.size() - 1; i >= 0; i--) newestFirst.add(group.get(i).actorUsername());
+            LocalDateTime latest = group.get(group.size() - 1).createdAt();
+
+            Optional<NotificationGroup> existing = groupRepository.findByKey(first.recipientId(), first.type(), first.postId());
+            if (existing.isPresent()) {
+                // La entidad solo se lee: si se borró entretanto (deleteByPost) el UPDATE no toca nada
+                NotificationGroup g = existing.get();
+                groupRepository.addToGroup(g.getId(), group.size(), group.size(),
+                        NotificationGroup.mergeSample(g.getSampleActors(), newestFirst), latest);
+            } else {
+                create(first.recipientId(), first.type(), first.postId(), group.size(), newestFirst, latest, group.size());
+            }
+        }
+    }
+
+    private void create(Long recipientId, String type, Long postId, int count, List<String> newestFirst,
+                        LocalDateTime latest, int unread) {
+        NotificationGroup g = new NotificationGroup();
+        g.setRecipient(userRepository.getReferenceById(recipientId));
+        g.setType(type);
+        if (postId != null) g.setPost(postRepository.getReferenceById(postId));
+        g.setActorCount(count);
+        g.addSampleActors(newestFirst);
+        g.setUnreadCount(unread);
+        g.setUpdatedAt(latest);
+        groupRepository.save(g);
+    }
+
+    /**
+     * Notificaciones que se van a borrar (unlike de algo ya insertado, compactación), con sus ids en el
+     * mismo orden; se llama en la transacción del borrado, antes del DELETE. Se descuentan de su grupo
+     * (de las no leídas, solo las que seguían sin leer) y el actor sale de la muestra; un grupo que se
+     * queda sin notificaciones se borra.
+     */
+    public void retract(List<ActivityPipeline.PendingActivity> removed, List<Long> ids) {
+        Set<Long> unread = ids.isEmpty() ? Set.of() : new HashSet<>(activityRepository.findUnreadIds(ids));
+
+        Map<List<Object>, List<Integer>> byKey = new LinkedHashMap<>();
+        for (int i = 0; i < removed.size(); i++) {
+            ActivityPipeline.PendingActivity a = removed.get(i);
+            if (ActivityService.MESSAGE.equals(a.type())) continue;
+            byKey.computeIfAbsent(Arrays.asList(a.recipientId(), a.type(), a.postId()), k -> new ArrayList<>()).add(i);
+        }
+
+        for (List<Integer> group : byKey.values()) {
+            ActivityPipeline.PendingActivity first = removed.get(group.get(0));
+            NotificationGroup g = groupRepository.findByKey(first.recipientId(), first.type(), first.postId()).orElse(null);
+            if (g == null) continue;
+            if (groupRepository.deleteIfEmptied(g.getId(), group.size()) > 0) continue;
+
+            int unreadRemoved = (int) group.stream().filter(i -> unread.contains(ids.get(i))).count();
+            List<String> actors = group.stream().map(i -> removed.get(i).actorUsername()).toList();
+            groupRepository.removeFromGroup(g.getId(), group.size(), unreadRemoved,
+                    NotificationGroup.removeFromSample(g.getSampleActors(), actors));
+        }
+    }
+
+    // Compactación: grupos leídos sin novedades desde antes de la fecha dada (en tandas de como mucho limit)
+    public int deleteIdle(LocalDateTime before, int limit) {
+        List<Long> ids = groupRepository.findIdleIds(before, PageRequest.of(0, limit));
+        if (!ids.isEmpty()) groupRepository.deleteAllByIdInBatch(ids);
+        return ids.size();
+    }
+
+    public void markAllRead(Long recipientId) {
+        groupRepository.markAllRead(recipientId);
+    }
+
+    public void deleteByPost(Post post) {
+        groupRepository.deleteByPost(post);
+    }
+
+    public void deleteByPostIds(Collection<Long> postIds) {
+        groupRepository.deleteByPostIds(postIds);
+    }
+
+    // --- LECTURA ---
+
+    public List<NotificationGroupDTO> page(Long recipientId, String type, FeedCursor cursor, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        List<NotificationGroupDTO> groups = (cursor == null)
+                ? groupRepository.findPage(recipientId, type, page)
+                : groupRepository.findPageBefore(recipientId, type, cursor.createdAt(), cursor.id(), page);
+
+        Set<String> usernames = groups.stream()
+                .flatMap(g -> g.getSampleUsernames().stream())
+                .collect(Collectors.toSet());
+        Map<String, User> actors = usernames.isEmpty() ? Map.of()
+                : userRepository.findByUsernameIn(usernames).stream()
+                        .collect(Collectors.toMap(User::getUsername, Function.identity()));
+
+        for (NotificationGroupDTO g : groups) {
+            g.setActors(g.getSampleUsernames().stream()
+                    .map(actors::get)
+                    .filter(Objects::nonNull)
+                    .map(u -> new PostDTO.Author(u.getUsername(), u.getDisplayName(), u.getAvatarUrl()))
+                    .toList());
+        }
+        return groups;
+    }
+
+    // --- MIGRACIÓN ---
+
+    // Un grupo por (destinatario, tipo, post) con sus totales, sus no leídas según la marca de lectura
+    // (lo mismo que cuentan los contadores de ActivityService) y los últimos actores distintos de muestra
+    private static final String BACKFILL_SQL =
+            "INSERT INTO notification_groups (recipient_id, type, post_id, actor_count, sample_actors, unread_count, updated_at) " +
+            "SELECT t.recipient_id, t.type, t.post_id, t.total, s.sample, t.unread, t.latest FROM (" +
+            "  SELECT a.recipient_id, a.type, a.post_id, COUNT(*) AS total, " +
+            "  SUM(CASE WHEN a.is_read = false AND a.id > COALESCE(m.notifications_read_up_to, 0) THEN 1 ELSE 0 END) AS unread, " +
+            "  MAX(a.created_at) AS latest " +
+            "  FROM activities a LEFT JOIN activity_read_marks m ON m.user_id = a.recipient_id " +
+            "  WHERE a.type <> 'MESSAGE' GROUP BY a.recipient_id, a.type, a.post_id" +
+            ") t LEFT JOIN (" +
+            "  SELECT r.recipient_id, r.type, r.post_id, STRING_AGG(r.username, ',' ORDER BY r.last_id DESC) AS sample FROM (" +
+            "    SELECT x.recipient_id, x.type, x.post_id, u.username, MAX(x.id) AS last_id, " +
+            "    ROW_NUMBER() OVER (PARTITION BY x.recipient_id, x.type, x.post_id ORDER BY MAX(x.id) DESC) AS rn " +
+            "    FROM activities x JOIN users u ON u.id = x.actor_id " +
+            "    WHERE x.type <> 'MESSAGE' GROUP BY x.recipient_id, x.type, x.post_id, u.username" +
+            "  ) r WHERE r.rn <= " + NotificationGroup.SAMPLE_SIZE + " GROUP BY r.recipient_id, r.type, r.post_id" +
+            ") s ON s.recipient_id = t.recipient_id AND s.type = t.type AND s.post_id IS NOT DISTINCT FROM t.post_id";
+
+    /**
+     * Primera arrancada con la tabla vacía: se agrupan las notificaciones existentes con un único
+     * INSERT ... SELECT. ActivityPipeline la llama con su cerrojo, así ningún lote crea grupos a la vez.
+     */
+    public void backfill() {
+        if (groupRepository.count() > 0 || activityRepository.count() == 0) return;
+        Integer created = transactionTemplate.execute(status -> jdbcTemplate.update(BACKFILL_SQL));
+        log.info("Notificaciones agrupadas inicializadas con {} grupos", created);
+    }
+}
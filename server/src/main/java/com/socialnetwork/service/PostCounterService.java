@@ -0,0 +1,166 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.entity.Post;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agregador en memoria de los contadores de likes y reposts.
+ *
+ * Cada like/repost suma un delta en un LongAdder (acumulador por celdas, sin locks) en lugar de
+ * hacer leer-modificar-escribir sobre la fila del post. Un proceso periódico vuelca los deltas
+ * pendientes en lote a la tabla posts, y las lecturas devuelven valor persistido + delta pendiente.
+ * Así un post viral no serializa miles de transacciones sobre la misma fila.
+ *
+ * El volcado va por JDBC y después se desalojan de la caché de segundo nivel solo los posts tocados:
+ * un UPDATE masivo en JPQL invalidaría la región Post entera en cada vuelta. Mientras un lote está
+ * en vuelo sus deltas siguen sumándose en las lecturas, hasta que el commit y el desalojo terminan.
+ */
+@Service
+public class PostCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostCounterService.class);
+
+    // Vueltas seguidas sin actividad antes de liberar la celda de un post
+    private static final int IDLE_FLUSHES_BEFORE_EVICT = 3;
+
+    // Suma deltas a los contadores sin leer la fila
+    private static final String INCREMENT_SQL =
+            "UPDATE posts SET likes_count = COALESCE(likes_count, 0) + ?, " +
+            "reposts_count = COALESCE(reposts_count, 0) + ? WHERE id = ?";
+
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    private final Map<Long, Counters> pending = new ConcurrentHashMap<>();
+
+    // Deltas ya restados de pending cuyo UPDATE aún no se ha confirmado y desalojado de la caché
+    private final Map<Long, long[]> inFlight = new ConcurrentHashMap<>();
+
+    // --- ESCRITURA ---
+
+    // Si la transacción hace rollback (p. ej. doble click que choca con la PK de post_likes) no se cuenta nada
+    public void addLikes(Long postId, int delta) {
+        TransactionHooks.afterCommit(() -> add(postId, delta, 0));
+    }
+
+    public void addReposts(Long postId, int delta) {
+        TransactionHooks.afterCommit(() -> add(postId, 0, delta));
+    }
+
+    // Dentro de compute: la celda no se puede liberar entre que se obtiene y se suma el delta
+    private void add(Long postId, long likes, long reposts) {
+        pending.compute(postId, (id, counters) -> {
+            if (counters == null) counters = new Counters();
+            counters.likes.add(likes);
+            counters.reposts.add(reposts);
+            return counters;
+        });
+    }
+
+    // --- LECTURA ---
+
+    // Deja en cada post su delta pendiente para que los getters devuelvan persistido + pendiente
+    public void applyPending(Collection<Post> posts) {
+        for (Post post : posts) {
+            if (post.getId() == null) {
+                post.setPendingLikes(0);
+                post.setPendingReposts(0);
+                continue;
+            }
+            post.setPendingLikes(pendingLikes(post.getId()));
+            post.setPendingReposts(pendingReposts(post.getId()));
+        }
+    }
+
+    public int pendingLikes(Long postId) {
+        Counters counters = pending.get(postId);
+        long[] flushing = inFlight.get(postId);
+        return (int) (((counters != null) ? counters.likes.sum() : 0) + ((flushing != null) ? flushing[0] : 0));
+    }
+
+    public int pendingReposts(Long postId) {
+        Counters counters = pending.get(postId);
+        long[] flushing = inFlight.get(postId);
+        return (int) (((counters != null) ? counters.reposts.sum() : 0) + ((flushing != null) ? flushing[1] : 0));
+    }
+
+    // --- VOLCADO ---
+
+    @Scheduled(fixedDelayString = "${socialnetwork.counters.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) return;
+
+        Map<Long, long[]> batch = new HashMap<>();
+        for (Map.Entry<Long, Counters> entry : pending.entrySet()) {
+            Counters counters = entry.getValue();
+            // Se resta lo leído en vez de resetear: los likes que llegan mientras tanto no se pierden
+            long likes = counters.likes.sum();
+            long reposts = counters.reposts.sum();
+            if (likes == 0 && reposts == 0) {
+                if (++counters.idleFlushes >= IDLE_FLUSHES_BEFORE_EVICT) evictIfIdle(entry.getKey());
+                continue;
+            }
+            counters.idleFlushes = 0;
+            // Primero en vuelo y luego se resta: una lectura intermedia cuenta de más un instante, nunca de menos
+            inFlight.put(entry.getKey(), new long[]{likes, reposts});
+            counters.likes.add(-likes);
+            counters.reposts.add(-reposts);
+            batch.put(entry.getKey(), new long[]{likes, reposts});
+        }
+        if (batch.isEmpty()) return;
+
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INCREMENT_SQL, batch.entrySet(), batch.size(), (ps, entry) -> {
+                        ps.setLong(1, entry.getValue()[0]);
+                        ps.setLong(2, entry.getValue()[1]);
+                        ps.setLong(3, entry.getKey());
+                    }));
+        } catch (RuntimeException e) {
+            // Se devuelven los deltas para reintentarlos en la siguiente vuelta
+            log.warn("No se pudieron volcar los contadores de {} posts, se reintentará", batch.size(), e);
+            batch.forEach((postId, delta) -> {
+                add(postId, delta[0], delta[1]);
+                inFlight.remove(postId);
+            });
+            return;
+        }
+        // Ya confirmado: la próxima lectura de estos posts trae los contadores de la base de datos,
+        // y solo entonces dejan de sumarse los deltas en vuelo
+        batch.keySet().forEach(postId -> {
+            entityManagerFactory.getCache().evict(Post.class, postId);
+            inFlight.remove(postId);
+        });
+    }
+
+    // Se comprueba otra vez dentro de compute: si llegó un delta desde la lectura, la celda se queda
+    private void evictIfIdle(Long postId) {
+        pending.compute(postId, (id, counters) ->
+                (counters == null || (counters.likes.sum() == 0 && counters.reposts.sum() == 0)) ? null : counters);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private static final class Counters {
+        final LongAdder likes = new LongAdder();
+        final LongAdder reposts = new LongAdder();
+        // Solo lo toca el hilo que vuelca
+        int idleFlushes;
+    }
+}
@@ -0,0 +1,342 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.entity.Post;
+import com.socialnetwork.repository.PostRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Borrado de posts en dos pasos.
+ *
+ * 1. En la petición solo se marca el post con deleted_at, se descuenta del padre y se quita de los
+ *    timelines y del índice de búsqueda. Sus reposts dejan de verse a la vez (las vistas filtran el
+ *    original marcado) y su hilo también (se lee desde la raíz). El coste no depende del subárbol.
+ * 2. Un único hilo en segundo plano lee el subárbol completo con una consulta recursiva, marca lo que
+ *    cuelga del post en tandas (así una respuesta abierta por id o desde el perfil de su autor también
+ *    desaparece) y lo purga de las hojas hacia la raíz, cada tanda en su transacción corta:
+ *    notificaciones, likes, reposts, mensajes que lo compartían y los posts, con una sentencia por
+ *    tabla (id = ANY(?); los posts, una por nivel). Cada tanda toma el cerrojo de ActivityPipeline,
+ *    el único que escribe en notification_groups. Entre tandas se deja paso a las peticiones.
+ *
+ * Si el servidor se para a medias, la marca sigue en la tabla y el barrido periódico vuelve a encolar
+ * la purga, solo de las raíces marcadas (las que no cuelgan de otro post marcado): cada purga ya
+ * recoge su subárbol. El progreso se consulta en /api/posts/{id}/deletion.
+ */
+@Service
+public class PostDeletionService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostDeletionService.class);
+
+    public enum Phase { QUEUED, COLLECTING, HIDING, PURGING, DONE, FAILED }
+
+    // "total" son los posts del subárbol encontrados hasta ahora (crece si llegan respuestas durante la purga)
+    public record Progress(Long postId, Phase phase, long total, long deleted, int rounds,
+                           LocalDateTime requestedAt, LocalDateTime finishedAt, String error) {}
+
+    @Autowired private PostRepository postRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private ActivityService activityService;
+    @Autowired private ActivityPipeline activityPipeline;
+    @Autowired private TimelineService timelineService;
+    @Autowired private PostSearchService postSearchService;
+    @Autowired private ImageService imageService;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    // Posts por transacción
+    @Value("${socialnetwork.deletion.batch-size:500}")
+    private int batchSize;
+
+    // Pausa entre tandas para no acaparar la base de datos
+    @Value("${socialnetwork.deletion.batch-pause-ms:20}")
+    private long batchPauseMs;
+
+    // Lecturas del subárbol antes de dar la purga por fallida (si le siguen llegando respuestas)
+    @Value("${socialnetwork.deletion.max-rounds:5}")
+    private int maxRounds;
+
+    // Cuánto se conserva el progreso de una purga terminada
+    @Value("${socialnetwork.deletion.keep-finished-minutes:60}")
+    private long keepFinishedMinutes;
+
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+    private ExecutorService worker;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder postsPurged = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder retriedBatches = new LongAdder();
+    private volatile long lastJobMillis;
+
+    // Solo el hilo de purga escribe el progreso; las peticiones lo leen
+    private static final class Job {
+        final Long postId;
+        final LocalDateTime requestedAt = LocalDateTime.now();
+        final AtomicBoolean submitted = new AtomicBoolean();
+        volatile Phase phase = Phase.QUEUED;
+        volatile long total;
+        volatile long deleted;
+        volatile int rounds;
+        volatile LocalDateTime finishedAt;
+        volatile String error;
+
+        Job(Long postId) {
+            this.postId = postId;
+        }
+
+        boolean finished() {
+            return phase == Phase.DONE || phase == Phase.FAILED;
+        }
+
+        Progress snapshot() {
+            return new Progress(postId, phase, total, deleted, rounds, requestedAt, finishedAt, error);
+        }
+    }
+
+    private record Row(Long id, Long userId, Long parentId, Long originalPostId, String imageUrl, int depth) {}
+
+    @PostConstruct
+    void init() {
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "post-deletion");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Lo que quede a medias sigue marcado y se retoma con el siguiente arranque
+        worker.shutdownNow();
+    }
+
+    // --- MARCA (en la transacción de la petición) ---
+
+    /**
+     * Marca el post como borrado y encola la purga de su subárbol al confirmar. Si ya estaba
+     * marcado, devuelve la purga en curso (o la reintenta si falló).
+     */
+    public Progress delete(Post post) {
+        if (!post.isDeleted()) {
+            post.setDeletedAt(LocalDateTime.now());
+            if (post.getParentPost() != null) {
+                Post parent = post.getParentPost();
+                parent.setRepliesCount(Math.max(0, parent.getRepliesCount() - 1));
+                postRepository.save(parent);
+            }
+            postRepository.save(post);
+            timelineService.onPostDeleted(post);
+            postSearchService.onPostDeleted(post);
+        }
+        Job job = enqueue(post.getId());
+        TransactionHooks.afterCommit(() -> submit(job));
+        return job.snapshot();
+    }
+
+    public Optional<Progress> progress(Long postId) {
+        Job job = jobs.get(postId);
+        return (job == null) ? Optional.empty() : Optional.of(job.snapshot());
+    }
+
+    // Una purga por post: si ya hay una en marcha se reutiliza; si terminó, se empieza otra
+    private Job enqueue(Long postId) {
+        return jobs.compute(postId, (id, job) -> (job == null || job.finished()) ? new Job(id) : job);
+    }
+
+    private void submit(Job job) {
+        if (job.submitted.compareAndSet(false, true)) worker.execute(() -> run(job));
+    }
+
+    // --- PURGA (hilo post-deletion) ---
+
+    private void run(Job job) {
+        long start = System.currentTimeMillis();
+        try {
+            // Se vuelve a leer el subárbol hasta que no queda nada: recoge las respuestas que llegaron mientras tanto
+            for (int round = 1; ; round++) {
+                if (round > maxRounds) throw new IllegalStateException("El subárbol sigue cambiando tras " + maxRounds + " pasadas");
+                job.rounds = round;
+                job.phase = Phase.COLLECTING;
+                List<Row> rows = collect(job.postId);
+                if (rows.isEmpty()) break;
+                job.total = job.deleted + rows.size();
+                job.phase = Phase.HIDING;
+                hide(job.postId, rows);
+                job.phase = Phase.PURGING;
+                purge(job, rows);
+            }
+            job.phase = Phase.DONE;
+            completed.increment();
+        } catch (RuntimeException e) {
+            job.error = e.getMessage();
+            job.phase = Phase.FAILED;
+            failed.increment();
+            log.error("Error purgando el post {} (se reintenta en el siguiente barrido)", job.postId, e);
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            lastJobMillis = System.currentTimeMillis() - start;
+        }
+    }
+
+    // Subárbol sin repetidos, de las hojas a la raíz: cada post se borra después de todo lo que cuelga de él
+    private List<Row> collect(Long rootId) {
+        Map<Long, Row> byId = new HashMap<>();
+        for (Object[] columns : postRepository.findSubtreeRows(rootId)) {
+            Row row = new Row(((Number) columns[0]).longValue(), ((Number) columns[1]).longValue(),
+                    columns[2] == null ? null : ((Number) columns[2]).longValue(),
+                    columns[3] == null ? null : ((Number) columns[3]).longValue(),
+                    (String) columns[4], ((Number) columns[5]).intValue());
+            byId.merge(row.id(), row, (a, b) -> a.depth() >= b.depth() ? a : b);
+        }
+        List<Row> rows = new ArrayList<>(byId.values());
+        rows.sort(Comparator.comparingInt(Row::depth).reversed());
+        return rows;
+    }
+
+    // Marca lo que cuelga del post en tandas y lo quita de timelines y búsqueda antes de empezar a borrar
+    private void hide(Long rootId, List<Row> rows) {
+        List<Row> descendants = rows.stream().filter(row -> !row.id().equals(rootId)).toList();
+        for (int from = 0; from < descendants.size(); from += batchSize) {
+            List<Row> batch = descendants.subList(from, Math.min(from + batchSize, descendants.size()));
+            transactionTemplate.executeWithoutResult(status -> hideBatch(batch));
+        }
+    }
+
+    private void hideBatch(List<Row> batch) {
+        List<Long> ids = batch.stream().map(Row::id).toList();
+        jdbcTemplate.update("UPDATE posts SET deleted_at = ? WHERE id = ANY(?) AND deleted_at IS NULL", ps -> {
+            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.now()));
+            setIds(ps, 2, ids);
+        });
+
+        postSearchService.onPostsDeleted(batch.stream().filter(row -> row.originalPostId() == null).map(Row::id).toList());
+        Map<Long, List<Long>> timelineByAuthor = new HashMap<>();
+        for (Row row : batch) {
+            if (row.parentId() == null) timelineByAuthor.computeIfAbsent(row.userId(), k -> new ArrayList<>()).add(row.id());
+        }
+        TransactionHooks.afterCommit(() -> {
+            timelineByAuthor.forEach(timelineService::onPostsDeleted);
+            ids.forEach(id -> entityManagerFactory.getCache().evict(Post.class, id));
+        });
+    }
+
+    private void purge(Job job, List<Row> rows) {
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<Row> batch = rows.subList(from, Math.min(from + batchSize, rows.size()));
+            try {
+                // El cerrojo antes que la transacción, como en ActivityPipeline (si no, la cola y la purga
+                // podrían esperarse una a otra: una por el cerrojo y la otra por filas ya bloqueadas)
+                Integer deleted = activityPipeline.exclusive(() -> transactionTemplate.execute(status -> purgeBatch(batch)));
+                job.deleted += (deleted == null) ? 0 : deleted;
+                batches.increment();
+            } catch (DataIntegrityViolationException e) {
+                // Una respuesta nueva cuelga de un post del lote: se vuelve a leer el subárbol
+                retriedBatches.increment();
+                return;
+            }
+            if (batchPauseMs > 0 && from + batchSize < rows.size()) {
+                try {
+                    Thread.sleep(batchPauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Purga interrumpida");
+                }
+            }
+        }
+    }
+
+    // Una transacción: todo lo que apunta a los posts del lote y después los posts, una sentencia por tabla
+    private int purgeBatch(List<Row> batch) {
+        // Los que siguen existiendo, bloqueados: otra purga del mismo subárbol pudo adelantarse
+        Set<Long> present = new HashSet<>(jdbcTemplate.query("SELECT id FROM posts WHERE id = ANY(?) FOR UPDATE",
+                ps -> setIds(ps, 1, batch.stream().map(Row::id).toList()), (rs, n) -> rs.getLong(1)));
+        List<Row> deleted = batch.stream().filter(row -> present.contains(row.id())).toList();
+        if (deleted.isEmpty()) return 0;
+        List<Long> ids = deleted.stream().map(Row::id).toList();
+
+        activityService.deleteByPostIds(ids);
+        jdbcTemplate.update("UPDATE messages SET shared_post_id = NULL WHERE shared_post_id = ANY(?)", ps -> setIds(ps, 1, ids));
+        jdbcTemplate.update("DELETE FROM post_likes WHERE post_id = ANY(?)", ps -> setIds(ps, 1, ids));
+        jdbcTemplate.update("DELETE FROM post_reposts WHERE post_id = ANY(?)", ps -> setIds(ps, 1, ids));
+        // Los posts, un nivel por sentencia y de abajo arriba: así ninguna fila borrada es padre de otra de
+        // la misma sentencia (la profundidad de un post siempre es mayor que la de su padre)
+        Map<Integer, List<Long>> byDepth = new TreeMap<>(Comparator.reverseOrder());
+        for (Row row : deleted) byDepth.computeIfAbsent(row.depth(), k -> new ArrayList<>()).add(row.id());
+        for (List<Long> level : byDepth.values()) {
+            jdbcTemplate.update("DELETE FROM posts WHERE id = ANY(?)", ps -> setIds(ps, 1, level));
+        }
+
+        // Las copias de los reposts no cuentan como referencia de la imagen: solo los posts originales
+        List<String> images = new ArrayList<>();
+        List<Long> indexed = new ArrayList<>();
+        Map<Long, List<Long>> timelineByAuthor = new HashMap<>();
+        for (Row row : deleted) {
+            if (row.originalPostId() == null) {
+                indexed.add(row.id());
+                if (row.imageUrl() != null) images.add(row.imageUrl());
+            }
+            if (row.parentId() == null) timelineByAuthor.computeIfAbsent(row.userId(), k -> new ArrayList<>()).add(row.id());
+        }
+        imageService.releaseAll(images);
+        postSearchService.onPostsDeleted(indexed);
+
+        TransactionHooks.afterCommit(() -> {
+            timelineByAuthor.forEach(timelineService::onPostsDeleted);
+            ids.forEach(id -> entityManagerFactory.getCache().evict(Post.class, id));
+        });
+        postsPurged.add(deleted.size());
+        return deleted.size();
+    }
+
+    // Lista de ids como un único parámetro ARRAY (para "= ANY(?)")
+    private static void setIds(PreparedStatement ps, int index, List<Long> ids) throws SQLException {
+        ps.setArray(index, ps.getConnection().createArrayOf("bigint", ids.toArray()));
+    }
+
+    // --- BARRIDO ---
+
+    // Raíces marcadas sin purga en curso (reinicio a medias o purga fallida) y progreso antiguo
+    @Scheduled(initialDelayString = "${socialnetwork.deletion.sweep-initial-delay-ms:30000}",
+               fixedDelayString = "${socialnetwork.deletion.sweep-interval-ms:300000}")
+    public void sweep() {
+        for (Long id : postRepository.findDeletedRootIds()) {
+            submit(enqueue(id));
+        }
+        LocalDateTime horizon = LocalDateTime.now().minusMinutes(keepFinishedMinutes);
+        jobs.values().removeIf(job -> job.finished() && job.finishedAt.isBefore(horizon));
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("pending", jobs.values().stream().filter(job -> !job.finished()).count());
+        stats.put("completed", completed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("postsPurged", postsPurged.sum());
+        stats.put("batches", batches.sum());
+        stats.put("retriedBatches", retriedBatches.sum());
+        stats.put("lastJobMillis", lastJobMillis);
+        return stats;
+    }
+}
@@ -0,0 +1,298 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.entity.Post;
+import com.socialnetwork.repository.PostRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Búsqueda de texto sobre el contenido de los posts con un índice invertido en memoria.
+ *
+ * El texto se normaliza (minúsculas, sin tildes ni diéresis: "canción" = "cancion") y se parte en
+ * palabras, quitando las vacías más comunes en español e inglés. Cada palabra guarda sus posts
+ * ordenados por id, que va en el mismo orden que la fecha. Una búsqueda exige todas las palabras:
+ * recorre la lista más corta del más nuevo al más viejo y comprueba las demás por búsqueda binaria.
+ *
+ * Puntuación = relevancia (BM25 sin normalizar por longitud) × factor de recencia. Como la recencia
+ * solo baja al avanzar, en cuanto el peor del top-K supera lo máximo que podría sacar un post más
+ * viejo se deja de recorrer: la consulta no crece con el total de posts.
+ *
+ * Se construye al arrancar desde la tabla posts (rebuild) y se mantiene al crear y borrar. Los
+ * reposts no se indexan: repiten el texto de su original.
+ */
+@Service
+public class PostSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(PostSearchService.class);
+
+    // Saturación de la frecuencia de una palabra en el post (BM25)
+    private static final double K1 = 1.2;
+    // Peso mínimo de la recencia: un post viejo muy relevante aún puede salir
+    private static final double RECENCY_FLOOR = 0.2;
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "a", "al", "con", "de", "del", "el", "en", "es", "la", "las", "lo", "los", "mi", "no", "por", "que",
+            "se", "su", "un", "una", "y", "ya", "me", "te", "para", "pero", "como", "mas",
+            "an", "and", "are", "at", "be", "for", "in", "is", "it", "my", "of", "on", "or", "the", "to", "was", "with");
+
+    @Autowired private PostRepository postRepository;
+
+    // Horas para que la recencia pierda la mitad de su peso
+    @Value("${socialnetwork.search.recency-half-life-hours:72}")
+    private double halfLifeHours;
+
+    @Value("${socialnetwork.search.rebuild-batch-size:1000}")
+    private int rebuildBatchSize;
+
+    private volatile Index index = new Index();
+    // Índice que se está reconstruyendo: recibe también las altas/bajas mientras tanto
+    private volatile Index building;
+
+    // --- ESCRITURA (al confirmar) ---
+
+    public void onPostCreated(Post post) {
+        if (post.getId() == null || post.getOriginalPostId() != null) return;
+        Long id = post.getId();
+        String content = post.getContent();
+        long createdAt = epoch(post.getCreatedAt());
+        TransactionHooks.afterCommit(() -> forEachIndex(i -> i.add(id, content, createdAt)));
+    }
+
+    public void onPostDeleted(Post post) {
+        onPostsDeleted(List.of(post.getId()));
+    }
+
+    public void onPostsDeleted(Collection<Long> ids) {
+        TransactionHooks.afterCommit(() -> forEachIndex(i -> ids.forEach(i::remove)));
+    }
+
+    private synchronized void forEachIndex(Consumer<Index> change) {
+        change.accept(index);
+        if (building != null) change.accept(building);
+    }
+
+    // --- RECONSTRUCCIÓN ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Index fresh = new Index();
+        fresh.trackRemovals(true);
+        synchronized (this) {
+            building = fresh;
+        }
+        long afterId = 0;
+        int batch;
+        do {
+            List<Object[]> rows = postRepository.findSearchRows(afterId, PageRequest.of(0, rebuildBatchSize));
+            for (Object[] row : rows) {
+                fresh.add((Long) row[0], (String) row[1], epoch((LocalDateTime) row[2]));
+            }
+            batch = rows.size();
+            if (batch > 0) afterId = (Long) rows.get(batch - 1)[0];
+        } while (batch == rebuildBatchSize);
+
+        synchronized (this) {
+            fresh.trackRemovals(false);
+            index = fresh;
+            building = null;
+        }
+        log.info("Índice de búsqueda de posts: {} posts, {} palabras", fresh.size(), fresh.terms());
+    }
+
+    // --- BÚSQUEDA ---
+
+    // Ids de los limit posts mejor puntuados que contienen todas las palabras de la búsqueda
+    public List<Long> search(String query, int limit) {
+        List<String> terms = tokenize(query).stream().distinct().toList();
+        if (terms.isEmpty()) return List.of();
+        return index.top(terms, limit, epoch(LocalDateTime.now()), halfLifeHours * 3600);
+    }
+
+    // --- TEXTO ---
+
+    static List<String> tokenize(String text) {
+        if (text == null) return List.of();
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() >= 2 && !STOPWORDS.contains(token)) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static long epoch(LocalDateTime time) {
+        return (time != null ? time : LocalDateTime.now()).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Listas de posts por palabra y fecha de cada post, con un cerrojo de lectura/escritura.
+     */
+    private static final class Index {
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final Map<Long, Doc> docs = new HashMap<>();
+        // Bajas que llegan durante la reconstrucción, antes de que se lea su fila (solo mientras se construye)
+        private final Set<Long> removed = new HashSet<>();
+        private boolean tracksRemovals;
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private record Doc(long createdAt, Set<String> terms) {}
+
+        private record Hit(long id, double score) {}
+
+        void add(Long id, String content, long createdAt) {
+            Map<String, Integer> tf = new HashMap<>();
+            for (String token : tokenize(content)) tf.merge(token, 1, Integer::sum);
+
+            lock.writeLock().lock();
+            try {
+                if (docs.containsKey(id) || removed.contains(id)) return;
+                docs.put(id, new Doc(createdAt, tf.keySet()));
+                tf.forEach((term, count) -> postings.computeIfAbsent(term, t -> new Postings()).add(id, count));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Long id) {
+            lock.writeLock().lock();
+            try {
+                if (tracksRemovals) removed.add(id);
+                Doc doc = docs.remove(id);
+                if (doc == null) return;
+                for (String term : doc.terms()) {
+                    Postings list = postings.get(term);
+                    if (list != null && list.remove(id) && list.size == 0) postings.remove(term);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void trackRemovals(boolean track) {
+            lock.writeLock().lock();
+            try {
+                tracksRemovals = track;
+                if (!track) removed.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<Long> top(List<String> terms, int limit, long now, double halfLifeSeconds) {
+            lock.readLock().lock();
+            try {
+                List<Postings> lists = new ArrayList<>(terms.size());
+                double maxRelevance = 0;
+                double[] idf = new double[terms.size()];
+                for (String term : terms) {
+                    Postings list = postings.get(term);
+                    if (list == null) return List.of();
+                    lists.add(list);
+                }
+                lists.sort(Comparator.comparingInt(l -> l.size));
+                for (int t = 0; t < lists.size(); t++) {
+                    idf[t] = Math.log(1 + (double) docs.size() / lists.get(t).size);
+                    maxRelevance += idf[t] * (K1 + 1);
+                }
+
+                PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Hit::score));
+                Postings driver = lists.get(0);
+                for (int i = driver.size - 1; i >= 0; i--) {
+                    long id = driver.ids[i];
+                    Doc doc = docs.get(id);
+                    if (doc == null) continue;
+                    double recency = recency(now - doc.createdAt(), halfLifeSeconds);
+                    // Corte: ni con la máxima relevancia superaría al peor del top-K
+                    if (best.size() == limit && best.peek().score() >= maxRelevance * recency) break;
+
+                    double relevance = idf[0] * saturate(driver.tf[i]);
+                    for (int t = 1; t < lists.size() && relevance >= 0; t++) {
+                        int count = lists.get(t).tfOf(id);
+                        relevance = (count == 0) ? -1 : relevance + idf[t] * saturate(count);
+                    }
+                    if (relevance < 0) continue;
+
+                    best.add(new Hit(id, relevance * recency));
+                    if (best.size() > limit) best.poll();
+                }
+
+                List<Long> ids = new ArrayList<>(best.size());
+                while (!best.isEmpty()) ids.add(best.poll().id());
+                Collections.reverse(ids);
+                return ids;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private static double saturate(int tf) {
+            return tf * (K1 + 1) / (tf + K1);
+        }
+
+        private static double recency(long ageSeconds, double halfLifeSeconds) {
+            double decay = Math.pow(0.5, Math.max(0, ageSeconds) / halfLifeSeconds);
+            return RECENCY_FLOOR + (1 - RECENCY_FLOOR) * decay;
+        }
+
+        int size() {
+            return docs.size();
+        }
+
+        int terms() {
+            return postings.size();
+        }
+    }
+
+    /**
+     * Posts de una palabra ordenados por id (ascendente) con la frecuencia en cada uno.
+     * Los posts nuevos tienen el id mayor, así que casi siempre se añade al final.
+     */
+    private static final class Postings {
+        private long[] ids = new long[4];
+        private int[] tf = new int[4];
+        private int size;
+
+        void add(long id, int count) {
+            int at = (size == 0 || ids[size - 1] < id) ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0 && at < size) return;
+            if (at < 0) at = -at - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                tf = Arrays.copyOf(tf, size * 2);
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            System.arraycopy(tf, at, tf, at + 1, size - at);
+            ids[at] = id;
+            tf[at] = count;
+            size++;
+        }
+
+        boolean remove(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) return false;
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            System.arraycopy(tf, at + 1, tf, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        int tfOf(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            return at >= 0 ? tf[at] : 0;
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package com.socialnetwork.service;
 
+import com.socialnetwork.dto.PostDTO;
 import com.socialnetwork.entity.Post;
 import com.socialnetwork.repository.PostRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import java.util.List;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class PostService {
@@ -12,6 +16,12 @@ public class PostService {
     @Autowired
     private PostRepository postRepository;
 
+    @Autowired
+    private PostCounterService postCounterService;
+
+    @Autowired
+    private ViewerStateService viewerStateService;
+
     public List<Post> getAllPosts() {
         return postRepository.findAll();
     }
@@ -19,4 +29,37 @@ public class PostService {
     public Post createPost(Post post) {
         return postRepository.save(post);
     }
-}
\ No newline at end of file
+
+    /**
+     * Vistas ligeras de los posts dados, en el mismo orden que los ids.
+     * Una consulta para los posts y, como mucho, otra para los likes/reposts del viewer;
+     * los ids que ya no existen se descartan.
+     */
+    public List<PostDTO> getViews(List<Long> ids, String viewer) {
+        if (ids.isEmpty()) return List.of();
+
+        Map<Long, PostDTO> byId = postRepository.findViewsByIds(ids).stream()
+                .collect(Collectors.toMap(PostDTO::getId, Function.identity()));
+
+        ViewerStateService.ViewerState state = viewerStateService.resolve(viewer,
+                byId.values().stream().map(PostDTO::canonicalId).toList());
+
+        List<PostDTO> views = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            PostDTO view = byId.get(id);
+            if (view == null) continue;
+            // Likes/reposts aún no volcados por PostCounterService
+            Long canonicalId = view.canonicalId();
+            view.setLikedByMe(state.liked().contains(canonicalId));
+            view.setRepostedByMe(state.reposted().contains(canonicalId));
+            view.setLikesCount(Math.max(0, view.getLikesCount() + postCounterService.pendingLikes(canonicalId)));
+            view.setRepostsCount(Math.max(0, view.getRepostsCount() + postCounterService.pendingReposts(canonicalId)));
+            views.add(view);
+        }
+        return views;
+    }
+
+    public Optional<PostDTO> getView(Long id, String viewer) {
+        return getViews(List.of(id), viewer).stream().findFirst();
+    }
+}
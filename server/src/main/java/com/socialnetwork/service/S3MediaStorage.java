@@ -0,0 +1,312 @@
+package com.socialnetwork.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Imágenes en un bucket con la API de S3 (AWS, MinIO, R2...), para poder tener varias instancias
+ * detrás de un balanceador. Peticiones HTTP firmadas con AWS Signature V4, sin SDK.
+ *
+ * Los clientes descargan directamente del bucket: /api/posts/images/... responde con una redirección
+ * a una URL prefirmada (o a public-base-url si el bucket está detrás de un CDN público). La firma se
+ * hace por ventanas de media validez, así que la misma imagen da la misma URL durante un rato y el
+ * navegador la reutiliza de su caché.
+ */
+@Service
+@ConditionalOnProperty(name = "socialnetwork.media.storage", havingValue = "s3")
+public class S3MediaStorage implements MediaStorage {
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    // p. ej. https://s3.eu-west-1.amazonaws.com o http://localhost:9000 (MinIO)
+    @Value("${socialnetwork.media.s3.endpoint}")
+    private String endpoint;
+
+    @Value("${socialnetwork.media.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${socialnetwork.media.s3.bucket}")
+    private String bucket;
+
+    @Value("${socialnetwork.media.s3.access-key}")
+    private String accessKey;
+
+    @Value("${socialnetwork.media.s3.secret-key}")
+    private String secretKey;
+
+    // true: endpoint/bucket/clave (MinIO y compatibles); false: bucket.endpoint/clave (AWS)
+    @Value("${socialnetwork.media.s3.path-style:true}")
+    private boolean pathStyle;
+
+    // Prefijo de las claves dentro del bucket (p. ej. "uploads/")
+    @Value("${socialnetwork.media.s3.prefix:}")
+    private String prefix;
+
+    // Validez de las URLs prefirmadas (máximo de S3: 7 días)
+    @Value("${socialnetwork.media.s3.presign-seconds:3600}")
+    private long presignSeconds;
+
+    // Si el bucket se publica (CDN), se redirige aquí sin firmar: URL pública del prefijo + nombre
+    @Value("${socialnetwork.media.s3.public-base-url:}")
+    private String publicBaseUrl;
+
+    @Value("${socialnetwork.media.s3.timeout-seconds:10}")
+    private long timeoutSeconds;
+
+    private HttpClient http;
+    private URI base;
+
+    @PostConstruct
+    void init() {
+        base = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        presignSeconds = Math.max(120, Math.min(presignSeconds, 604800));
+        http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(timeoutSeconds)).build();
+    }
+
+    // --- OPERACIONES ---
+
+    @Override
+    public void put(String name, byte[] content, String contentType) throws IOException {
+        Map<String, String> headers = new TreeMap<>();
+        headers.put("content-type", contentType);
+        // Las redirecciones llevan al cliente al bucket: que guarde la imagen como inmutable
+        headers.put("cache-control", IMMUTABLE);
+        HttpResponse<byte[]> response = send("PUT", key(name), Map.of(), headers, content);
+        if (response.statusCode() / 100 != 2) throw failure("PUT", name, response);
+    }
+
+    @Override
+    public boolean exists(String name) throws IOException {
+        HttpResponse<byte[]> response = send("HEAD", key(name), Map.of(), Map.of(), new byte[0]);
+        if (response.statusCode() == 404) return false;
+        if (response.statusCode() / 100 != 2) throw failure("HEAD", name, response);
+        return true;
+    }
+
+    @Override
+    public void delete(String name) throws IOException {
+        HttpResponse<byte[]> response = send("DELETE", key(name), Map.of(), Map.of(), new byte[0]);
+        if (response.statusCode() / 100 != 2 && response.statusCode() != 404) throw failure("DELETE", name, response);
+    }
+
+    // ListObjectsV2, página a página
+    @Override
+    public List<String> list() throws IOException {
+        List<String> names = new ArrayList<>();
+        String token = null;
+        do {
+            Map<String, String> query = new TreeMap<>();
+            query.put("list-type", "2");
+            if (!prefix.isEmpty()) query.put("prefix", prefix);
+            if (token != null) query.put("continuation-token", token);
+            HttpResponse<byte[]> response = send("GET", "", query, Map.of(), new byte[0]);
+            if (response.statusCode() / 100 != 2) throw failure("LIST", bucket, response);
+
+            Document xml = parse(response.body());
+            NodeList keys = xml.getElementsByTagName("Key");
+            for (int i = 0; i < keys.getLength(); i++) {
+                String key = keys.item(i).getTextContent();
+                if (key.startsWith(prefix)) names.add(key.substring(prefix.length()));
+            }
+            NodeList next = xml.getElementsByTagName("NextContinuationToken");
+            token = next.getLength() > 0 ? next.item(0).getTextContent() : null;
+        } while (token != null);
+        return names;
+    }
+
+    @Override
+    public Path localPath(String name) {
+        return null;
+    }
+
+    @Override
+    public Optional<DirectLink> directLink(String name) {
+        if (!publicBaseUrl.isEmpty()) {
+            String url = (publicBaseUrl.endsWith("/") ? publicBaseUrl : publicBaseUrl + "/") + encode(name, true);
+            return Optional.of(new DirectLink(url, 31536000));
+        }
+        // Misma firma durante media validez: la URL se repite y el navegador la tiene en caché
+        long now = Instant.now().getEpochSecond();
+        long window = presignSeconds / 2;
+        long signedAt = now / window * window;
+        String url = presign(key(name), signedAt);
+        return Optional.of(new DirectLink(url, Math.max(0, signedAt + presignSeconds - now - 60)));
+    }
+
+    // --- FIRMA (AWS Signature V4) ---
+
+    private HttpResponse<byte[]> send(String method, String key, Map<String, String> query,
+                                      Map<String, String> extraHeaders, byte[] body) throws IOException {
+        String amzDate = AMZ_DATE.format(Instant.now());
+        String payloadHash = hex(sha256(body));
+        String host = host();
+
+        Map<String, String> headers = new TreeMap<>(extraHeaders);
+        headers.put("host", host);
+        headers.put("x-amz-content-sha256", payloadHash);
+        headers.put("x-amz-date", amzDate);
+
+        String canonicalQuery = canonicalQuery(query);
+        String signedHeaders = String.join(";", headers.keySet());
+        StringBuilder canonicalHeaders = new StringBuilder();
+        headers.forEach((name, value) -> canonicalHeaders.append(name).append(':').append(value.trim()).append('\n'));
+        String canonicalRequest = method + "\n" + canonicalPath(key) + "\n" + canonicalQuery + "\n"
+                + canonicalHeaders + "\n" + signedHeaders + "\n" + payloadHash;
+        String scope = amzDate.substring(0, 8) + "/" + region + "/s3/aws4_request";
+        String signature = sign(amzDate, scope, canonicalRequest);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(key, canonicalQuery))
+                .timeout(Duration.ofSeconds(timeoutSeconds))
+                .method(method, body.length == 0 ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body))
+                .header("Authorization", ALGORITHM + " Credential=" + accessKey + "/" + scope
+                        + ", SignedHeaders=" + signedHeaders + ", Signature=" + signature);
+        // host lo pone el cliente HTTP (el mismo valor que se ha firmado)
+        headers.forEach((name, value) -> {
+            if (!name.equals("host")) request.header(name, value);
+        });
+        try {
+            return http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Petición a S3 interrumpida", e);
+        }
+    }
+
+    // URL prefirmada de GET (solo se firma host; el contenido no se conoce)
+    String presign(String key, long signedAtEpochSeconds) {
+        String amzDate = AMZ_DATE.format(Instant.ofEpochSecond(signedAtEpochSeconds));
+        String scope = amzDate.substring(0, 8) + "/" + region + "/s3/aws4_request";
+        Map<String, String> query = new TreeMap<>();
+        query.put("X-Amz-Algorithm", ALGORITHM);
+        query.put("X-Amz-Credential", accessKey + "/" + scope);
+        query.put("X-Amz-Date", amzDate);
+        query.put("X-Amz-Expires", String.valueOf(presignSeconds));
+        query.put("X-Amz-SignedHeaders", "host");
+        String canonicalQuery = canonicalQuery(query);
+        String canonicalRequest = "GET\n" + canonicalPath(key) + "\n" + canonicalQuery + "\n"
+                + "host:" + host() + "\n\nhost\n" + UNSIGNED_PAYLOAD;
+        String signature = sign(amzDate, scope, canonicalRequest);
+        return uri(key, canonicalQuery + "&X-Amz-Signature=" + signature).toString();
+    }
+
+    private String sign(String amzDate, String scope, String canonicalRequest) {
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n"
+                + hex(sha256(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), amzDate.substring(0, 8));
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        return hex(hmac(key, stringToSign));
+    }
+
+    // --- URLS ---
+
+    private String key(String name) {
+        return prefix + name;
+    }
+
+    private String host() {
+        String host = pathStyle ? base.getHost() : bucket + "." + base.getHost();
+        return base.getPort() == -1 ? host : host + ":" + base.getPort();
+    }
+
+    private String canonicalPath(String key) {
+        // Clave vacía = el propio bucket (ListObjects)
+        String path = (base.getRawPath() == null ? "" : base.getRawPath()) + (pathStyle ? "/" + bucket : "")
+                + (key.isEmpty() && pathStyle ? "" : "/" + encode(key, true));
+        return path.isEmpty() ? "/" : path;
+    }
+
+    private URI uri(String key, String canonicalQuery) {
+        return URI.create(base.getScheme() + "://" + host() + canonicalPath(key) + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+    }
+
+    private static String canonicalQuery(Map<String, String> query) {
+        StringJoiner joiner = new StringJoiner("&");
+        new TreeMap<>(query).forEach((k, v) -> joiner.add(encode(k, false) + "=" + encode(v, false)));
+        return joiner.toString();
+    }
+
+    // Codificación URI de AWS: todo menos A-Z a-z 0-9 - _ . ~ (y / en las rutas)
+    static String encode(String value, boolean keepSlash) {
+        StringBuilder out = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (keepSlash && c == '/')) {
+                out.append(c);
+            } else {
+                out.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+            }
+        }
+        return out.toString();
+    }
+
+    // --- UTILIDADES ---
+
+    private static byte[] sha256(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private static Document parse(byte[] body) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(body));
+        } catch (Exception e) {
+            throw new IOException("Respuesta de S3 no válida", e);
+        }
+    }
+
+    private static IOException failure(String operation, String name, HttpResponse<byte[]> response) {
+        return new IOException("S3 " + operation + " " + name + ": HTTP " + response.statusCode()
+                + " " + new String(response.body(), StandardCharsets.UTF_8));
+    }
+}
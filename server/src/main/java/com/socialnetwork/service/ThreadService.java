@@ -0,0 +1,159 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.dto.FeedCursor;
+import com.socialnetwork.dto.PostDTO;
+import com.socialnetwork.dto.ThreadNode;
+import com.socialnetwork.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Hilos de respuestas (/api/posts/{id}/thread).
+ *
+ * El árbol bajo un post se lee en una sola consulta recursiva (PostRepository.findThreadRows) que
+ * solo trae (id, padre, profundidad, fecha), acotada en profundidad y en filas. Con eso se elige en
+ * memoria qué se muestra: por anchura (los niveles de arriba primero), como mucho "branch" respuestas
+ * por post y "limit" en total; después se cargan las vistas de los elegidos con una consulta más
+ * (PostService.getViews). Las ramas anchas se paginan pidiendo el hilo de ese post con su nextCursor.
+ */
+@Service
+public class ThreadService {
+
+    // Cursor de la primera página: antes de cualquier respuesta
+    private static final FeedCursor START = new FeedCursor(LocalDateTime.of(1970, 1, 1, 0, 0), 0L);
+
+    @Autowired private PostRepository postRepository;
+    @Autowired private PostService postService;
+
+    // Niveles de respuestas bajo el post pedido (1 = solo las directas)
+    @Value("${socialnetwork.threads.default-depth:4}")
+    private int defaultDepth;
+
+    @Value("${socialnetwork.threads.max-depth:10}")
+    private int maxDepth;
+
+    // Respuestas que se muestran de cada post; el resto, con su cursor
+    @Value("${socialnetwork.threads.default-branch:5}")
+    private int defaultBranch;
+
+    @Value("${socialnetwork.threads.max-branch:50}")
+    private int maxBranch;
+
+    // Respuestas en total por petición
+    @Value("${socialnetwork.threads.default-limit:60}")
+    private int defaultLimit;
+
+    @Value("${socialnetwork.threads.max-limit:300}")
+    private int maxLimit;
+
+    // Filas que puede leer la consulta recursiva (id, padre, profundidad, fecha: sin contenido)
+    @Value("${socialnetwork.threads.max-rows:2000}")
+    private int maxRows;
+
+    private record Row(Long id, Long parentId, int depth, LocalDateTime createdAt) {}
+
+    /**
+     * Hilo bajo el post "rootId": el propio post con sus respuestas, o solo las posteriores a
+     * "after" si se pagina una rama. Vacío si el post no existe.
+     */
+    public Optional<ThreadNode> getThread(Long rootId, FeedCursor after, Integer depth, Integer branch,
+                                          Integer limit, String viewer) {
+        int levels = bound(depth, defaultDepth, maxDepth);
+        int width = bound(branch, defaultBranch, maxBranch);
+        int budget = bound(limit, defaultLimit, maxLimit);
+        FeedCursor from = (after != null) ? after : START;
+
+        // Una fila de más en el primer nivel para saber si quedan respuestas directas
+        int rowLimit = Math.max(maxRows, width + 2);
+        List<Row> rows = postRepository.findThreadRows(rootId, from.createdAt(), from.id(), width + 1, levels, rowLimit)
+                .stream().map(ThreadService::toRow).toList();
+
+        // Si la consulta se cortó, el nivel más profundo leído puede estar a medias: se descarta
+        int complete = levels;
+        if (rows.size() == rowLimit) {
+            complete = rows.stream().mapToInt(Row::depth).max().orElse(1) - 1;
+        }
+
+        Map<Long, List<Row>> children = new HashMap<>();
+        for (Row row : rows) {
+            if (row.depth() > complete) continue;
+            children.computeIfAbsent(row.parentId(), k -> new ArrayList<>()).add(row);
+        }
+        Comparator<Row> oldestFirst = Comparator.comparing(Row::createdAt).thenComparing(Row::id);
+        children.values().forEach(list -> list.sort(oldestFirst));
+
+        // Selección por anchura: primero las respuestas directas, luego las de segundo nivel...
+        Map<Long, List<Row>> shown = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        ids.add(rootId);
+        Deque<Long> queue = new ArrayDeque<>();
+        queue.add(rootId);
+        int remaining = budget;
+        while (!queue.isEmpty() && remaining > 0) {
+            Long id = queue.poll();
+            List<Row> kids = children.getOrDefault(id, List.of());
+            List<Row> taken = kids.subList(0, Math.min(kids.size(), Math.min(width, remaining)));
+            shown.put(id, taken);
+            remaining -= taken.size();
+            for (Row kid : taken) {
+                ids.add(kid.id());
+                queue.add(kid.id());
+            }
+        }
+
+        Map<Long, PostDTO> views = new HashMap<>();
+        for (PostDTO view : postService.getViews(ids, viewer)) views.put(view.getId(), view);
+        PostDTO root = views.get(rootId);
+        if (root == null) return Optional.empty();
+
+        // Respuestas directas del post pedido que no entran: las del primer nivel son como mucho width + 1
+        List<Row> firstLevel = children.getOrDefault(rootId, List.of());
+        List<Row> rootShown = shown.getOrDefault(rootId, List.of());
+        int rootMore = 0;
+        if (firstLevel.size() > rootShown.size()) {
+            long total = (after == null)
+                    ? root.getRepliesCount()
+                    : postRepository.countRepliesAfter(rootId, from.createdAt(), from.id());
+            rootMore = (int) Math.max(firstLevel.size() - rootShown.size(), total - rootShown.size());
+        }
+        return Optional.of(node(root, rootShown, rootMore, shown, children, views, complete));
+    }
+
+    // Nodo con sus respuestas elegidas; las que no se leyeron se cuentan con repliesCount
+    private ThreadNode node(PostDTO post, List<Row> taken, int more, Map<Long, List<Row>> shown,
+                            Map<Long, List<Row>> children, Map<Long, PostDTO> views, int complete) {
+        List<ThreadNode> replies = new ArrayList<>(taken.size());
+        for (Row row : taken) {
+            PostDTO view = views.get(row.id());
+            if (view == null) continue; // borrado entre las dos consultas
+            List<Row> kidsShown = shown.getOrDefault(row.id(), List.of());
+            int kidsMore = (row.depth() < complete)
+                    ? children.getOrDefault(row.id(), List.of()).size() - kidsShown.size()
+                    : view.getRepliesCount();
+            replies.add(node(view, kidsShown, kidsMore, shown, children, views, complete));
+        }
+        String next = null;
+        if (more > 0 && !taken.isEmpty()) {
+            Row last = taken.get(taken.size() - 1);
+            next = new FeedCursor(last.createdAt(), last.id()).encode();
+        }
+        return new ThreadNode(post, replies, Math.max(0, more), next);
+    }
+
+    private static Row toRow(Object[] columns) {
+        Object createdAt = columns[3];
+        return new Row(((Number) columns[0]).longValue(), ((Number) columns[1]).longValue(),
+                ((Number) columns[2]).intValue(),
+                (createdAt instanceof Timestamp ts) ? ts.toLocalDateTime() : (LocalDateTime) createdAt);
+    }
+
+    private static int bound(Integer requested, int fallback, int max) {
+        if (requested == null || requested <= 0) return fallback;
+        return Math.min(requested, max);
+    }
+}
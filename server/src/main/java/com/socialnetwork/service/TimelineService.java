@@ -0,0 +1,277 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.dto.FeedCursor;
+import com.socialnetwork.dto.TimelineEntry;
+import com.socialnetwork.entity.Post;
+import com.socialnetwork.repository.PostRepository;
+import com.socialnetwork.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timeline "Siguiendo" materializado en memoria (fan-out-on-write).
+ *
+ * Cada usuario activo tiene un anillo acotado con los ids de los posts raíz de la gente que sigue.
+ * Al crear un post o repost se empuja a los timelines ya cargados de sus seguidores; los timelines
+ * que no están en memoria se siembran desde la base de datos la primera vez que se leen.
+ * Los autores con muchos seguidores no se reparten al escribir: se leen al servir la página
+ * (fan-out-on-read) y se mezclan con el anillo, para que un solo post no genere miles de escrituras.
+ * Como mucho hay max-cached-users timelines en memoria; sale el que lleva más tiempo sin leerse.
+ */
+@Service
+public class TimelineService {
+
+    private static final Comparator<TimelineEntry> NEWEST_FIRST =
+            Comparator.comparing(TimelineEntry::createdAt).thenComparing(TimelineEntry::postId).reversed();
+
+    @Autowired private PostRepository postRepository;
+    @Autowired private UserRepository userRepository;
+
+    // Máximo de entradas por usuario; las páginas más antiguas se leen de la base de datos
+    @Value("${socialnetwork.timeline.capacity:800}")
+    private int capacity;
+
+    // Autores con más seguidores que esto se leen en modo fan-out-on-read
+    @Value("${socialnetwork.timeline.fanout-follower-limit:5000}")
+    private int fanoutFollowerLimit;
+
+    // Los timelines se vuelven a sembrar pasado este tiempo (recoge cambios de modo de los autores)
+    @Value("${socialnetwork.timeline.reseed-after-minutes:60}")
+    private long reseedAfterMinutes;
+
+    // Timelines en memoria como máximo (LRU por lectura del feed)
+    @Value("${socialnetwork.timeline.max-cached-users:20000}")
+    private int maxCachedUsers;
+
+    // En orden de inserción: solo page() lo refresca, así empujar posts no mantiene vivos
+    // los timelines de seguidores que ya no leen el feed
+    private Map<Long, Timeline> timelines;
+
+    // Siembras en curso por usuario: lo que se empuja mientras se consulta la base de datos se guarda
+    // aquí y se reaplica al publicar el timeline (si no, faltaría hasta la siguiente siembra)
+    private final Map<Long, List<List<TimelineEntry>>> seeding = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        timelines = new LinkedHashMap<>(256, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Timeline> eldest) {
+                return size() > maxCachedUsers;
+            }
+        };
+    }
+
+    // --- ESCRITURA ---
+
+    // Post raíz o repost recién guardado: se empuja a los seguidores con el timeline cargado al confirmar
+    // (un repost que hace rollback no deja una entrada fantasma)
+    public void onPostCreated(Post post) {
+        if (post.getId() == null || post.getParentPost() != null) return;
+        Long authorId = post.getUser().getId();
+        if (userRepository.countFollowers(authorId) > fanoutFollowerLimit) return;
+
+        TimelineEntry entry = new TimelineEntry(post.getId(), authorId, post.getCreatedAt());
+        List<Long> followerIds = userRepository.findFollowerIds(authorId);
+        TransactionHooks.afterCommit(() -> followerIds.forEach(followerId -> push(followerId, entry)));
+    }
+
+    public void onPostDeleted(Post post) {
+        if (post.getId() == null) return;
+        onPostsDeleted(post.getUser().getId(), List.of(post.getId()));
+    }
+
+    // Varios posts del mismo autor (purga de un subárbol): una sola lectura de sus seguidores
+    public void onPostsDeleted(Long authorId, Collection<Long> postIds) {
+        for (Long followerId : userRepository.findFollowerIds(authorId)) {
+            Timeline timeline = cached(followerId);
+            if (timeline != null) postIds.forEach(timeline::removePost);
+        }
+    }
+
+    public void onUnfollow(Long followerId, Long authorId) {
+        Timeline timeline = cached(followerId);
+        if (timeline != null) timeline.removeAuthor(authorId);
+    }
+
+    // Al seguir a alguien el timeline se descarta y se vuelve a sembrar en la siguiente lectura
+    public void onFollow(Long followerId) {
+        evict(followerId);
+    }
+
+    // --- LECTURA ---
+
+    /**
+     * Entradas de la página del feed "Siguiendo" anterior al cursor, en orden (createdAt DESC, id DESC).
+     */
+    public List<TimelineEntry> page(Long userId, FeedCursor cursor, int limit) {
+        Timeline timeline = touch(userId);
+        if (timeline == null || timeline.isStale()) {
+            // Se siembra fuera del mapa para no bloquearlo mientras se consulta la base de datos;
+            // la siembra se registra antes de la consulta para no perder lo que se empuje mientras tanto
+            List<TimelineEntry> pushed = beginSeed(userId);
+            Timeline seeded = null;
+            try {
+                seeded = seed(userId);
+            } finally {
+                publish(userId, seeded, pushed);
+            }
+            timeline = seeded;
+        }
+
+        List<TimelineEntry> fromRing = timeline.page(cursor, limit);
+        List<TimelineEntry> merged = new ArrayList<>(fromRing);
+
+        // Autores en modo fan-out-on-read
+        if (!timeline.pullAuthors.isEmpty()) {
+            merged.addAll(load(timeline.pullAuthors, cursor, limit));
+        }
+
+        // El anillo perdió entradas antiguas y no llena la página: el resto sale de la base de datos
+        Optional<TimelineEntry> oldest = timeline.oldest();
+        if (timeline.isTruncated() && fromRing.size() < limit && oldest.isPresent()) {
+            FeedCursor from = oldest.get().isBefore(cursor)
+                    ? new FeedCursor(oldest.get().createdAt(), oldest.get().postId())
+                    : cursor;
+            Set<Long> pushAuthors = new HashSet<>(userRepository.findFollowingIds(userId));
+            pushAuthors.removeAll(timeline.pullAuthors);
+            if (!pushAuthors.isEmpty()) merged.addAll(load(pushAuthors, from, limit));
+        }
+
+        return merged.stream()
+                .sorted(NEWEST_FIRST)
+                .distinct()
+                .limit(limit)
+                .toList();
+    }
+
+    private synchronized Timeline cached(Long userId) {
+        return timelines.get(userId);
+    }
+
+    // Lectura del feed: el timeline pasa al final de la cola de expulsión
+    private synchronized Timeline touch(Long userId) {
+        Timeline timeline = timelines.remove(userId);
+        if (timeline != null) timelines.put(userId, timeline);
+        return timeline;
+    }
+
+    // Al timeline cargado y a las siembras en curso del seguidor
+    private synchronized void push(Long followerId, TimelineEntry entry) {
+        Timeline timeline = timelines.get(followerId);
+        if (timeline != null) timeline.add(entry);
+        List<List<TimelineEntry>> pending = seeding.get(followerId);
+        if (pending != null) pending.forEach(pushed -> pushed.add(entry));
+    }
+
+    private synchronized List<TimelineEntry> beginSeed(Long userId) {
+        List<TimelineEntry> pushed = new ArrayList<>();
+        seeding.computeIfAbsent(userId, id -> new ArrayList<>()).add(pushed);
+        return pushed;
+    }
+
+    // Publica el timeline sembrado con lo empujado durante la consulta. Si la siembra se invalidó
+    // mientras tanto (siguió a alguien) no se publica: esta lectura lo usa y la siguiente vuelve a sembrar.
+    // Con timeline null (la consulta falló) solo se da de baja la siembra.
+    private synchronized void publish(Long userId, Timeline timeline, List<TimelineEntry> pushed) {
+        List<List<TimelineEntry>> pending = seeding.get(userId);
+        boolean current = pending != null && pending.removeIf(p -> p == pushed);
+        if (pending != null && pending.isEmpty()) seeding.remove(userId);
+        if (timeline == null) return;
+        pushed.forEach(timeline::add);
+        if (current) {
+            timelines.remove(userId);
+            timelines.put(userId, timeline);
+        }
+    }
+
+    private synchronized void evict(Long userId) {
+        timelines.remove(userId);
+        seeding.remove(userId);
+    }
+
+    private Timeline seed(Long userId) {
+        Set<Long> following = new HashSet<>(userRepository.findFollowingIds(userId));
+        Set<Long> pullAuthors = new HashSet<>(userRepository.findFollowingIdsWithMoreFollowersThan(userId, fanoutFollowerLimit));
+        following.removeAll(pullAuthors);
+
+        Timeline timeline = new Timeline(capacity, pullAuthors);
+        if (!following.isEmpty()) {
+            List<TimelineEntry> entries = postRepository.findTimelineEntries(following, PageRequest.of(0, capacity + 1));
+            timeline.seed(entries);
+        }
+        return timeline;
+    }
+
+    private List<TimelineEntry> load(Collection<Long> authorIds, FeedCursor cursor, int limit) {
+        PageRequest page = PageRequest.of(0, limit);
+        return (cursor == null)
+                ? postRepository.findTimelineEntries(authorIds, page)
+                : postRepository.findTimelineEntriesBefore(authorIds, cursor.createdAt(), cursor.id(), page);
+    }
+
+    /**
+     * Anillo acotado ordenado del más nuevo al más antiguo. Al superar la capacidad se descarta el más antiguo.
+     */
+    private class Timeline {
+        private final TreeSet<TimelineEntry> entries = new TreeSet<>(NEWEST_FIRST);
+        private final int capacity;
+        private final Set<Long> pullAuthors;
+        private final long seededAt = System.currentTimeMillis();
+        private boolean truncated;
+
+        Timeline(int capacity, Set<Long> pullAuthors) {
+            this.capacity = capacity;
+            this.pullAuthors = ConcurrentHashMap.newKeySet();
+            this.pullAuthors.addAll(pullAuthors);
+        }
+
+        synchronized void seed(List<TimelineEntry> seed) {
+            seed.forEach(this::add);
+        }
+
+        synchronized void add(TimelineEntry entry) {
+            entries.add(entry);
+            if (entries.size() > capacity) {
+                entries.pollLast();
+                truncated = true;
+            }
+        }
+
+        synchronized void removePost(Long postId) {
+            entries.removeIf(e -> e.postId().equals(postId));
+        }
+
+        synchronized void removeAuthor(Long authorId) {
+            entries.removeIf(e -> e.authorId().equals(authorId));
+            pullAuthors.remove(authorId);
+        }
+
+        synchronized List<TimelineEntry> page(FeedCursor cursor, int limit) {
+            List<TimelineEntry> page = new ArrayList<>(limit);
+            for (TimelineEntry entry : entries) {
+                if (!entry.isBefore(cursor)) continue;
+                page.add(entry);
+                if (page.size() == limit) break;
+            }
+            return page;
+        }
+
+        synchronized Optional<TimelineEntry> oldest() {
+            return entries.isEmpty() ? Optional.empty() : Optional.of(entries.last());
+        }
+
+        synchronized boolean isTruncated() {
+            return truncated;
+        }
+
+        boolean isStale() {
+            return System.currentTimeMillis() - seededAt > reseedAfterMinutes * 60_000;
+        }
+    }
+}
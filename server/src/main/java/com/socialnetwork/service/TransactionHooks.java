@@ -0,0 +1,26 @@
+package com.socialnetwork.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Efectos en memoria (contadores, cachés, índices) que solo deben aplicarse si la transacción confirma.
+ */
+final class TransactionHooks {
+
+    private TransactionHooks() {}
+
+    // Ejecuta la acción al confirmar la transacción actual, o en el acto si no hay transacción
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,277 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.dto.TrendEntry;
+import com.socialnetwork.entity.Post;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Hashtags y palabras en tendencia de los posts recientes, con memoria fija sea cual sea el volumen.
+ *
+ * La ventana (p. ej. 24 h) se parte en franjas. Cada franja cuenta en un Count-Min sketch y la
+ * ventana mantiene la suma de todas; al caducar una franja se resta de la suma y se vacía, así que
+ * la ventana avanza sin recorrer nada más que el propio sketch. Aparte se guardan unos pocos
+ * candidatos (los más contados vistos) con su estimación; las tendencias son los K mejores de ese
+ * conjunto acotado. Nunca se lee la tabla posts: al reiniciar se empieza con la ventana vacía.
+ */
+@Service
+public class TrendingService {
+
+    private static final Pattern HASHTAG = Pattern.compile("#([\\p{L}\\p{N}_]{2,50})");
+
+    // Las palabras más cortas son casi siempre ruido ("hoy", "muy"...)
+    private static final int MIN_TERM_LENGTH = 4;
+
+    @Value("${socialnetwork.trending.bucket-minutes:60}")
+    private int bucketMinutes;
+
+    @Value("${socialnetwork.trending.buckets:24}")
+    private int bucketCount;
+
+    @Value("${socialnetwork.trending.sketch-width:4096}")
+    private int sketchWidth;
+
+    @Value("${socialnetwork.trending.sketch-depth:4}")
+    private int sketchDepth;
+
+    // Candidatos que se siguen por tipo (las tendencias son los K mejores de estos)
+    @Value("${socialnetwork.trending.candidates:200}")
+    private int candidates;
+
+    private WindowCounter hashtags;
+    private WindowCounter terms;
+
+    @PostConstruct
+    void init() {
+        hashtags = new WindowCounter();
+        terms = new WindowCounter();
+    }
+
+    // --- ESCRITURA ---
+
+    // Cada hashtag y palabra cuenta una vez por post
+    public void onPostCreated(Post post) {
+        if (post.getId() == null || post.getOriginalPostId() != null || post.getContent() == null) return;
+        String content = post.getContent();
+        TransactionHooks.afterCommit(() -> {
+            long bucket = currentBucket();
+            Set<String> tags = extractHashtags(content);
+            Set<String> words = new HashSet<>();
+            for (String token : PostSearchService.tokenize(content)) {
+                if (token.length() >= MIN_TERM_LENGTH && !tags.contains(token)) words.add(token);
+            }
+            hashtags.add(tags, bucket);
+            terms.add(words, bucket);
+        });
+    }
+
+    // --- LECTURA ---
+
+    public List<TrendEntry> topHashtags(int limit) {
+        return hashtags.top(limit, currentBucket()).stream()
+                .map(t -> new TrendEntry("#" + t.term(), t.count()))
+                .toList();
+    }
+
+    public List<TrendEntry> topTerms(int limit) {
+        return terms.top(limit, currentBucket());
+    }
+
+    private long currentBucket() {
+        return System.currentTimeMillis() / 60_000 / bucketMinutes;
+    }
+
+    static Set<String> extractHashtags(String content) {
+        Set<String> tags = new LinkedHashSet<>();
+        Matcher m = HASHTAG.matcher(content);
+        while (m.find()) {
+            List<String> folded = PostSearchService.tokenize(m.group(1).replace('_', ' '));
+            if (!folded.isEmpty()) tags.add(String.join("_", folded));
+        }
+        return tags;
+    }
+
+    /**
+     * Ventana deslizante de franjas: un sketch por franja, la suma de la ventana y los candidatos.
+     */
+    private final class WindowCounter {
+        private final CountMinSketch[] buckets = new CountMinSketch[bucketCount];
+        private final long[] bucketIds = new long[bucketCount];
+        private final CountMinSketch window = new CountMinSketch(sketchDepth, sketchWidth);
+        private final Map<String, Long> tracked = new HashMap<>();
+        private long lastBucket = Long.MIN_VALUE;
+
+        WindowCounter() {
+            for (int i = 0; i < bucketCount; i++) {
+                buckets[i] = new CountMinSketch(sketchDepth, sketchWidth);
+                bucketIds[i] = Long.MIN_VALUE;
+            }
+        }
+
+        synchronized void add(Collection<String> items, long bucket) {
+            advance(bucket);
+            int slot = slot(bucket);
+            for (String item : items) {
+                buckets[slot].add(item);
+                window.add(item);
+                track(item, window.estimate(item));
+            }
+        }
+
+        synchronized List<TrendEntry> top(int limit, long bucket) {
+            advance(bucket);
+            PriorityQueue<TrendEntry> best = new PriorityQueue<>(limit + 1, Comparator.comparingLong(TrendEntry::count));
+            tracked.forEach((item, count) -> {
+                if (count <= 0) return;
+                best.add(new TrendEntry(item, count));
+                if (best.size() > limit) best.poll();
+            });
+            List<TrendEntry> result = new ArrayList<>(best);
+            result.sort(Comparator.comparingLong(TrendEntry::count).reversed().thenComparing(TrendEntry::term));
+            return result;
+        }
+
+        // Se queda con los candidatos más contados: uno nuevo solo entra si supera al peor
+        private void track(String item, long estimate) {
+            if (tracked.containsKey(item) || tracked.size() < candidates) {
+                tracked.put(item, estimate);
+                return;
+            }
+            Map.Entry<String, Long> worst = Collections.min(tracked.entrySet(), Map.Entry.comparingByValue());
+            if (estimate > worst.getValue()) {
+                tracked.remove(worst.getKey());
+                tracked.put(item, estimate);
+            }
+        }
+
+        // Caducan las franjas que han salido de la ventana; los candidatos se re-estiman sin ellas
+        private void advance(long bucket) {
+            if (bucket <= lastBucket) return;
+            boolean expired = false;
+            for (int i = 0; i < bucketCount; i++) {
+                if (bucketIds[i] != Long.MIN_VALUE && bucketIds[i] <= bucket - bucketCount) {
+                    window.subtract(buckets[i]);
+                    buckets[i].clear();
+                    bucketIds[i] = Long.MIN_VALUE;
+                    expired = true;
+                }
+            }
+            int slot = slot(bucket);
+            if (bucketIds[slot] != bucket) {
+                if (bucketIds[slot] != Long.MIN_VALUE) {
+                    window.subtract(buckets[slot]);
+                    buckets[slot].clear();
+                    expired = true;
+                }
+                bucketIds[slot] = bucket;
+            }
+            lastBucket = bucket;
+            if (expired) {
+                tracked.replaceAll((item, count) -> window.estimate(item));
+                tracked.values().removeIf(count -> count <= 0);
+            }
+        }
+
+        private int slot(long bucket) {
+            return (int) Math.floorMod(bucket, (long) bucketCount);
+        }
+    }
+
+    /**
+     * Count-Min sketch: depth filas de width contadores; la estimación es el mínimo de las filas
+     * (puede pasarse por colisiones, nunca quedarse corta).
+     *
+     * Las filas salen de un hash de 64 bits de los bytes UTF-8 (SipHash-2-4 con clave aleatoria por
+     * arranque): dos textos solo comparten columna en todas las filas si chocan los 64 bits, y sin la
+     * clave no se pueden fabricar hashtags que choquen a propósito para inflar una tendencia.
+     */
+    static final class CountMinSketch {
+        // Compartida por todos los sketches: la ventana suma y resta los de sus franjas celda a celda
+        private static final long KEY0;
+        private static final long KEY1;
+
+        static {
+            SecureRandom random = new SecureRandom();
+            KEY0 = random.nextLong();
+            KEY1 = random.nextLong();
+        }
+
+        private final int[][] counts;
+        private final int width;
+
+        CountMinSketch(int depth, int width) {
+            this.counts = new int[depth][width];
+            this.width = width;
+        }
+
+        void add(String item) {
+            long h = hash(item);
+            for (int row = 0; row < counts.length; row++) counts[row][index(h, row)]++;
+        }
+
+        long estimate(String item) {
+            long h = hash(item);
+            long min = Long.MAX_VALUE;
+            for (int row = 0; row < counts.length; row++) min = Math.min(min, counts[row][index(h, row)]);
+            return min;
+        }
+
+        void subtract(CountMinSketch other) {
+            for (int row = 0; row < counts.length; row++) {
+                for (int col = 0; col < width; col++) counts[row][col] -= other.counts[row][col];
+            }
+        }
+
+        void clear() {
+            for (int[] row : counts) Arrays.fill(row, 0);
+        }
+
+        // Doble hashing con las dos mitades del hash: fila i usa h1 + i*h2 (h2 impar, nunca 0)
+        private int index(long h, int row) {
+            return Math.floorMod((int) h + row * ((int) (h >>> 32) | 1), width);
+        }
+
+        private static long hash(String item) {
+            return sipHash(KEY0, KEY1, item.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // SipHash-2-4 (Aumasson y Bernstein), salida de 64 bits
+        static long sipHash(long k0, long k1, byte[] data) {
+            long[] v = {k0 ^ 0x736f6d6570736575L, k1 ^ 0x646f72616e646f6dL,
+                        k0 ^ 0x6c7967656e657261L, k1 ^ 0x7465646279746573L};
+            int tail = data.length & ~7;
+            for (int i = 0; i < tail; i += 8) compress(v, littleEndian(data, i, 8));
+            compress(v, ((long) data.length << 56) | littleEndian(data, tail, data.length - tail));
+            v[2] ^= 0xff;
+            for (int i = 0; i < 4; i++) round(v);
+            return v[0] ^ v[1] ^ v[2] ^ v[3];
+        }
+
+        private static void compress(long[] v, long m) {
+            v[3] ^= m;
+            round(v);
+            round(v);
+            v[0] ^= m;
+        }
+
+        private static void round(long[] v) {
+            v[0] += v[1]; v[1] = Long.rotateLeft(v[1], 13); v[1] ^= v[0]; v[0] = Long.rotateLeft(v[0], 32);
+            v[2] += v[3]; v[3] = Long.rotateLeft(v[3], 16); v[3] ^= v[2];
+            v[0] += v[3]; v[3] = Long.rotateLeft(v[3], 21); v[3] ^= v[0];
+            v[2] += v[1]; v[1] = Long.rotateLeft(v[1], 17); v[1] ^= v[2]; v[2] = Long.rotateLeft(v[2], 32);
+        }
+
+        private static long littleEndian(byte[] data, int from, int length) {
+            long value = 0;
+            for (int i = length - 1; i >= 0; i--) value = (value << 8) | (data[from + i] & 0xFF);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.entity.User;
+import com.socialnetwork.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Índice en memoria del buscador de usuarios (username y displayName).
+ *
+ * Texto normalizado (minúsculas, sin tildes) con dos estructuras: un mapa ordenado de palabras para
+ * los prefijos cortos (1-2 letras) y un índice de trigramas para el resto, cuyas listas se intersecan
+ * empezando por la más corta y se confirman con un "contiene" sobre el texto. Se construye al arrancar
+ * y se mantiene al registrarse, editar el perfil y seguir/dejar de seguir (número de seguidores).
+ *
+ * Orden: username exacto, username que empieza por la búsqueda, alguna palabra del nombre que empieza
+ * por ella, resto de coincidencias; dentro de cada nivel, más seguidores primero.
+ */
+@Service
+public class UserSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSearchService.class);
+
+    private static final int EXACT = 0, USERNAME_PREFIX = 1, WORD_PREFIX = 2, CONTAINS = 3;
+
+    @Autowired private UserRepository userRepository;
+
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<String, Set<Long>> trigrams = new HashMap<>();
+    private final NavigableMap<String, Set<Long>> words = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    private record Entry(Long id, String username, String displayName, long followers) {}
+
+    // --- CONSTRUCCIÓN ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        List<Object[]> rows = userRepository.findSearchRows();
+        lock.writeLock().lock();
+        try {
+            for (Object[] row : rows) {
+                index(new Entry((Long) row[0], normalize((String) row[1]), normalize((String) row[2]), ((Number) row[3]).longValue()));
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Índice de búsqueda de usuarios: {} usuarios, {} trigramas", rows.size(), trigrams.size());
+    }
+
+    // --- ESCRITURA (al confirmar) ---
+
+    // Alta o cambio de username/displayName
+    public void onSaved(User user) {
+        Long id = user.getId();
+        String username = normalize(user.getUsername());
+        String displayName = normalize(user.getDisplayName());
+        TransactionHooks.afterCommit(() -> write(() -> {
+            Entry old = unindex(id);
+            index(new Entry(id, username, displayName, old != null ? old.followers() : 0));
+        }));
+    }
+
+    public void onFollowersChanged(Long userId, int delta) {
+        TransactionHooks.afterCommit(() -> write(() -> {
+            Entry old = entries.get(userId);
+            if (old != null) entries.put(userId, new Entry(userId, old.username(), old.displayName(), Math.max(0, old.followers() + delta)));
+        }));
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(Entry entry) {
+        entries.put(entry.id(), entry);
+        for (String term : terms(entry)) {
+            for (String gram : trigramsOf(term)) trigrams.computeIfAbsent(gram, g -> new HashSet<>()).add(entry.id());
+            for (String word : term.split(" ")) {
+                if (!word.isEmpty()) words.computeIfAbsent(word, w -> new HashSet<>()).add(entry.id());
+            }
+        }
+    }
+
+    private Entry unindex(Long id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) return null;
+        for (String term : terms(entry)) {
+            for (String gram : trigramsOf(term)) removePosting(trigrams, gram, id);
+            for (String word : term.split(" ")) removePosting(words, word, id);
+        }
+        return entry;
+    }
+
+    private static void removePosting(Map<String, Set<Long>> index, String key, Long id) {
+        Set<Long> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) index.remove(key);
+    }
+
+    // --- BÚSQUEDA ---
+
+    /**
+     * Los limit usuarios mejor clasificados para la búsqueda. Hasta que el índice esté construido
+     * (justo al arrancar) se busca en la base de datos como antes.
+     */
+    public List<User> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty()) return List.of();
+        if (!ready) {
+            List<User> found = userRepository.findByUsernameContainingIgnoreCaseOrDisplayNameContainingIgnoreCase(query, query);
+            return found.subList(0, Math.min(limit, found.size()));
+        }
+
+        List<Long> ids = topIds(q, limit);
+        Map<Long, User> byId = userRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    private List<Long> topIds(String q, int limit) {
+        // Peor candidato arriba: se queda con los limit mejores sin ordenar todo
+        Comparator<Map.Entry<Entry, Integer>> better = Comparator
+                .<Map.Entry<Entry, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                .thenComparingLong(e -> e.getKey().followers())
+                .thenComparing(e -> e.getKey().username(), Comparator.reverseOrder());
+        PriorityQueue<Map.Entry<Entry, Integer>> top = new PriorityQueue<>(limit + 1, better);
+
+        lock.readLock().lock();
+        try {
+            for (Long id : candidates(q)) {
+                Entry entry = entries.get(id);
+                int rank = (entry != null) ? rank(entry, q) : -1;
+                if (rank < 0) continue;
+                top.add(Map.entry(entry, rank));
+                if (top.size() > limit) top.poll();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Long> ids = new ArrayList<>(top.size());
+        while (!top.isEmpty()) ids.add(top.poll().getKey().id());
+        Collections.reverse(ids);
+        return ids;
+    }
+
+    // Ids que pueden coincidir (se confirman en rank)
+    private Collection<Long> candidates(String q) {
+        List<String> grams = trigramsOf(q);
+        if (grams.isEmpty()) {
+            // 1-2 letras: solo prefijos de palabra (un "contiene" de una letra no aporta nada)
+            Set<Long> ids = new HashSet<>();
+            words.subMap(q, true, q + Character.MAX_VALUE, false).values().forEach(ids::addAll);
+            return ids;
+        }
+
+        List<Set<Long>> postings = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Set<Long> ids = trigrams.get(gram);
+            if (ids == null) return List.of();
+            postings.add(ids);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<Long> result = new HashSet<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !result.isEmpty(); i++) result.retainAll(postings.get(i));
+        return result;
+    }
+
+    private static int rank(Entry e, String q) {
+        if (e.username().equals(q)) return EXACT;
+        if (e.username().startsWith(q)) return USERNAME_PREFIX;
+        if (e.displayName().startsWith(q) || e.displayName().contains(" " + q)) return WORD_PREFIX;
+        if (e.username().contains(q) || e.displayName().contains(q)) return CONTAINS;
+        return -1;
+    }
+
+    // --- TEXTO ---
+
+    private static List<String> terms(Entry e) {
+        return e.displayName().isEmpty() ? List.of(e.username()) : List.of(e.username(), e.displayName());
+    }
+
+    private static List<String> trigramsOf(String term) {
+        if (term.length() < 3) return List.of();
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= term.length(); i++) grams.add(term.substring(i, i + 3));
+        return new ArrayList<>(grams);
+    }
+
+    // Minúsculas, sin tildes y con los espacios colapsados ("José  Pérez" -> "jose perez")
+    static String normalize(String text) {
+        if (text == null) return "";
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return folded.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").trim();
+    }
+}
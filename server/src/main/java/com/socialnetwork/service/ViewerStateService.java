@@ -0,0 +1,165 @@
+package com.socialnetwork.service;
+
+import com.socialnetwork.repository.PostRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Resuelve en bloque si un usuario ("viewer") dio like o reposteó cada post de una página.
+ *
+ * Una sola consulta contra post_likes/post_reposts por página. Delante hay un filtro de Bloom por
+ * usuario con los posts más recientes con los que interactuó: si dice que no, es seguro que no, y esos
+ * ids ni siquiera se consultan (lo normal es que el usuario no haya tocado casi nada del feed). Los
+ * posts más antiguos que los sembrados siempre se consultan. Un filtro que se llena con likes nuevos
+ * por encima de lo previsto se descarta y se vuelve a construir a su tamaño en la siguiente lectura.
+ */
+@Service
+public class ViewerStateService {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    // Filtros en memoria como máximo (LRU)
+    @Value("${socialnetwork.viewer-state.max-cached-viewers:10000}")
+    private int maxCachedViewers;
+
+    // Posts sembrados por filtro como máximo (los más recientes)
+    @Value("${socialnetwork.viewer-state.max-seeded-posts:5000}")
+    private int maxSeededPosts;
+
+    private Map<String, BloomFilter> filters;
+
+    // Versión por franja de usuarios: si alguien de la franja interactúa mientras se construye
+    // su filtro, ese filtro no se guarda (podría faltarle el like nuevo y dar un falso negativo)
+    private final AtomicLongArray versions = new AtomicLongArray(1024);
+
+    @PostConstruct
+    void init() {
+        filters = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BloomFilter> eldest) {
+                return size() > maxCachedViewers;
+            }
+        };
+    }
+
+    public record ViewerState(Set<Long> liked, Set<Long> reposted) {
+        public static final ViewerState EMPTY = new ViewerState(Set.of(), Set.of());
+    }
+
+    /**
+     * Likes/reposts del viewer sobre los posts dados (ids canónicos: el original si es un repost).
+     */
+    public ViewerState resolve(String viewer, Collection<Long> postIds) {
+        if (viewer == null || viewer.isBlank() || postIds.isEmpty()) return ViewerState.EMPTY;
+
+        BloomFilter filter = filterFor(viewer);
+        List<Long> candidates = postIds.stream().distinct().filter(filter::mightContain).toList();
+        if (candidates.isEmpty()) return ViewerState.EMPTY;
+
+        Set<Long> liked = new HashSet<>();
+        Set<Long> reposted = new HashSet<>();
+        for (Object[] row : postRepository.findViewerEngagement(viewer, candidates)) {
+            Long postId = ((Number) row[0]).longValue();
+            if ("L".equals(row[1].toString())) liked.add(postId);
+            else reposted.add(postId);
+        }
+        return new ViewerState(liked, reposted);
+    }
+
+    // Like o repost nuevo: se añade al filtro al confirmar
+    // (quitar no se puede; tras un unlike el falso positivo solo cuesta una consulta)
+    public void onEngaged(String viewer, Long postId) {
+        TransactionHooks.afterCommit(() -> {
+            versions.incrementAndGet(stripe(viewer));
+            BloomFilter filter = cachedFilter(viewer);
+            if (filter != null && !filter.add(postId)) evict(viewer, filter);
+        });
+    }
+
+    private BloomFilter filterFor(String viewer) {
+        BloomFilter filter = cachedFilter(viewer);
+        if (filter != null) return filter;
+
+        long version = versions.get(stripe(viewer));
+        List<Long> engaged = postRepository.findRecentEngagedPostIds(viewer, maxSeededPosts);
+        // Si no cupieron todos, por debajo del más antiguo cargado el filtro no sabe nada
+        long floor = (engaged.size() < maxSeededPosts) ? Long.MIN_VALUE : engaged.get(engaged.size() - 1);
+        filter = new BloomFilter(engaged.size(), floor);
+        engaged.forEach(filter::add);
+        synchronized (this) {
+            if (versions.get(stripe(viewer)) == version) filters.put(viewer, filter);
+        }
+        return filter;
+    }
+
+    private int stripe(String viewer) {
+        return viewer.hashCode() & (versions.length() - 1);
+    }
+
+    private synchronized BloomFilter cachedFilter(String viewer) {
+        return filters.get(viewer);
+    }
+
+    // Solo si sigue siendo el mismo filtro (otra lectura pudo reconstruirlo ya)
+    private synchronized void evict(String viewer, BloomFilter filter) {
+        filters.remove(viewer, filter);
+    }
+
+    /**
+     * Filtro de Bloom sobre ids de post: ~10 bits por elemento y 4 funciones hash (≈1% de falsos positivos),
+     * con holgura para los likes que se vayan añadiendo. Los ids por debajo de floor no están sembrados:
+     * para ellos siempre dice que puede.
+     */
+    static final class BloomFilter {
+        private static final int HASHES = 4;
+        private final long[] bits;
+        private final int size;
+        private final int capacity;
+        private final long floor;
+        private int items;
+
+        BloomFilter(int expectedItems, long floor) {
+            this.capacity = expectedItems + 256;
+            this.bits = new long[(capacity * 10 + 63) / 64];
+            this.size = bits.length * 64;
+            this.floor = floor;
+        }
+
+        // False si ya tiene más elementos de los previstos (la tasa de falsos positivos empieza a subir)
+        synchronized boolean add(long value) {
+            long h = mix(value);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = Math.floorMod(h1 + i * h2, size);
+                bits[bit >>> 6] |= 1L << bit;
+            }
+            return ++items <= capacity;
+        }
+
+        synchronized boolean mightContain(long value) {
+            if (value < floor) return true;
+            long h = mix(value);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32);
+            for (int i = 0; i < HASHES; i++) {
+                int bit = Math.floorMod(h1 + i * h2, size);
+                if ((bits[bit >>> 6] & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        // Mezclador de splitmix64: los ids consecutivos quedan bien repartidos
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.socialnetwork.repository;
+
+import com.socialnetwork.entity.Post;
+import com.socialnetwork.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Repost de un usuario sobre un original: búsqueda por (user_id, original_post_id) y restricción
+ * única uk_posts_user_original (quitar un repost ya no recorre la tabla posts entera).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+class PostRepositoryTest {
+
+    @Autowired private PostRepository postRepository;
+    @Autowired private UserRepository userRepository;
+
+    private User author;
+    private User reposter;
+    private Post original;
+
+    @BeforeEach
+    void setUp() {
+        author = user("author");
+        reposter = user("reposter");
+        original = postRepository.save(post(author, "original", null));
+    }
+
+    @Test
+    void findsTheRepostOfAUserOnAnOriginal() {
+        Post repost = postRepository.save(post(reposter, "original", original.getId()));
+        // Otros reposts y posts propios no deben confundir la búsqueda
+        postRepository.save(post(author, "original", original.getId()));
+        postRepository.save(post(reposter, "propio", null));
+
+        Optional<Post> found = postRepository.findByUserIdAndOriginalPostId(reposter.getId(), original.getId());
+        assertTrue(found.isPresent());
+        assertEquals(repost.getId(), found.get().getId());
+    }
+
+    @Test
+    void findsNothingWithoutARepost() {
+        postRepository.save(post(reposter, "propio", null));
+
+        assertTrue(postRepository.findByUserIdAndOriginalPostId(reposter.getId(), original.getId()).isEmpty());
+    }
+
+    @Test
+    void rejectsASecondRepostOfTheSameOriginal() {
+        postRepository.saveAndFlush(post(reposter, "original", original.getId()));
+
+        assertThrows(DataIntegrityViolationException.class,
+                () -> postRepository.saveAndFlush(post(reposter, "original", original.getId())));
+    }
+
+    @Test
+    void allowsManyPostsWithoutOriginal() {
+        // NULL en original_post_id no cuenta para la restricción
+        postRepository.saveAndFlush(post(reposter, "uno", null));
+        postRepository.saveAndFlush(post(reposter, "dos", null));
+
+        assertEquals(3, postRepository.count());
+    }
+
+    private User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("x");
+        return userRepository.save(user);
+    }
+
+    private static Post post(User user, String content, Long originalPostId) {
+        Post post = new Post();
+        post.setUser(user);
+        post.setContent(content);
+        post.setOriginalPostId(originalPostId);
+        post.setCreatedAt(LocalDateTime.now());
+        return post;
+    }
+}